@@ -18,6 +18,7 @@ package org.vaadin.netbeans;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.netbeans.api.java.source.ClasspathInfo;
 import org.netbeans.api.project.Project;
@@ -25,6 +26,7 @@ import org.openide.execution.ExecutorTask;
 import org.openide.filesystems.FileObject;
 import org.vaadin.netbeans.model.SourceDescendantsStrategy;
 import org.vaadin.netbeans.model.ModelOperation;
+import org.vaadin.netbeans.model.VaadinModel;
 
 /**
  * @author denis
@@ -47,8 +49,19 @@ public interface VaadinSupport {
 
     boolean isReady();
 
+    /**
+     * Runs {@code operation} inside java source task. Use it only if the
+     * operation requires java infrastructure state (f.e. it should be done
+     * after the classpath scan is finished).
+     */
     void runModelOperation( ModelOperation operation ) throws IOException;
 
+    /**
+     * Returns the current model. The model state is read without any java
+     * source task so this method is cheap and never blocks.
+     */
+    VaadinModel getModel();
+
     void addAction( Action action, ExecutorTask task );
 
     Collection<ExecutorTask> getTasks( Action action );
@@ -77,4 +90,17 @@ public interface VaadinSupport {
 
     String getVaadinVersion();
 
+    /**
+     * Returns {@code true} if the project has been inactive for a while and
+     * its caches are released. They are rebuilt on the first access.
+     */
+    boolean isLowMemoryMode();
+
+    /**
+     * Returns memory retained by the project data in bytes, keyed by the
+     * data name. Values are estimates based on the number of cached
+     * elements, not measured sizes.
+     */
+    Map<String, Long> getRetainedSizes();
+
 }
@@ -323,9 +323,12 @@ public class FullFledgedWidgetGenerator implements WidgetGenerator {
 
                 @Override
                 public void run( VaadinModel model ) {
-                    gwtXmlCreated[0] = model.getGwtXml() != null;
+                    List<String> paths = model.getSourcePaths();
+                    // source paths are available once the GWT model is loaded
+                    gwtXmlCreated[0] =
+                            model.getGwtXml() != null && !paths.isEmpty();
                     if (gwtXmlCreated[0]) {
-                        srcPath.add(model.getSourcePaths().get(0));
+                        srcPath.add(paths.get(0));
                     }
                 }
             });
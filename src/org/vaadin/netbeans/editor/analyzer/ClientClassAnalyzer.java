@@ -37,7 +37,6 @@ import org.openide.filesystems.FileUtil;
 import org.openide.util.NbBundle;
 import org.vaadin.netbeans.VaadinSupport;
 import org.vaadin.netbeans.editor.hints.Analyzer;
-import org.vaadin.netbeans.model.ModelOperation;
 import org.vaadin.netbeans.model.VaadinModel;
 import org.vaadin.netbeans.utils.JavaUtils;
 import org.vaadin.netbeans.utils.XmlUtils;
@@ -72,9 +71,8 @@ public abstract class ClientClassAnalyzer extends Analyzer {
         if (!isPackageCheckMode()) {
             return;
         }
-        final List<FileObject> clientPackage = new LinkedList<>();
-        final FileObject[] gwtXml = new FileObject[1];
-        final List<String> clientPkgFqn = new LinkedList<>();
+        List<FileObject> clientPackage = new LinkedList<>();
+        List<String> clientPkgFqn = new LinkedList<>();
 
         VaadinSupport support = getSupport();
         if (support == null || !support.isEnabled() || !support.isReady()) {
@@ -82,74 +80,56 @@ public abstract class ClientClassAnalyzer extends Analyzer {
         }
         CompilationInfo info = getInfo();
         TypeElement type = getType();
+        VaadinModel model = support.getModel();
+        FileObject gwtXml = model.getGwtXml();
+        if (gwtXml == null) {
+            List<Integer> positions =
+                    AbstractJavaFix.getElementPosition(info, type);
+            myNoGwtModule =
+                    ErrorDescriptionFactory.createErrorDescription(
+                            getSeverity(Severity.ERROR),
+                            Bundle.absentGwtModule(),
+                            createGwtModuleFixes(support),
+                            info.getFileObject(), positions.get(0),
+                            positions.get(1));
+            getDescriptions().add(myNoGwtModule);
+            return;
+        }
         try {
-            support.runModelOperation(new ModelOperation() {
-
-                @Override
-                public void run( VaadinModel model ) {
-                    gwtXml[0] = model.getGwtXml();
-                    if (gwtXml[0] == null) {
-                        return;
-                    }
-                    try {
-                        String fqn = AbstractJavaFix.getWidgetsetFqn(gwtXml[0]);
-                        for (String path : model.getSourcePaths()) {
-                            clientPackage.add(XmlUtils.getClientWidgetPackage(
-                                    gwtXml[0], path, false));
-                            clientPkgFqn.add(fqn.substring(0, fqn.length()
-                                    - gwtXml[0].getNameExt().length()
-                                    + XmlUtils.GWT_XML.length())
-                                    + path.replace('/', '.'));
-                        }
-                    }
-                    catch (IOException ignore) {
-                    }
-                }
-            });
-            boolean hasWidgetset = gwtXml[0] != null;
-            if (!hasWidgetset) {
-                List<Integer> positions =
-                        AbstractJavaFix.getElementPosition(info, type);
-                myNoGwtModule =
-                        ErrorDescriptionFactory.createErrorDescription(
-                                getSeverity(Severity.ERROR),
-                                Bundle.absentGwtModule(),
-                                createGwtModuleFixes(support),
-                                info.getFileObject(), positions.get(0),
-                                positions.get(1));
-                getDescriptions().add(myNoGwtModule);
+            String fqn = AbstractJavaFix.getWidgetsetFqn(gwtXml);
+            for (String path : model.getSourcePaths()) {
+                clientPackage.add(XmlUtils.getClientWidgetPackage(gwtXml,
+                        path, false));
+                clientPkgFqn.add(fqn.substring(0, fqn.length()
+                        - gwtXml.getNameExt().length()
+                        + XmlUtils.GWT_XML.length())
+                        + path.replace('/', '.'));
             }
-            else {
-                boolean isInsideClientPkg = false;
-                for (FileObject clientPkg : clientPackage) {
-                    if (clientPkg != null
-                            && FileUtil.isParentOf(clientPkg,
-                                    info.getFileObject()))
-                    {
-                        isInsideClientPkg = true;
-                        break;
-                    }
-                }
+        }
+        catch (IOException ignore) {
+        }
 
-                if (!isInsideClientPkg) {
-                    List<Integer> positions =
-                            AbstractJavaFix.getElementPosition(info, type);
-                    myNotClientPackage =
-                            ErrorDescriptionFactory
-                                    .createErrorDescription(
-                                            getSeverity(Severity.ERROR),
-                                            Bundle.notClientPackage(getPackages(clientPkgFqn)),
-                                            createRelocationFixes(gwtXml[0],
-                                                    clientPackage, clientPkgFqn),
-                                            info.getFileObject(), positions
-                                                    .get(0), positions.get(1));
-                    getDescriptions().add(myNotClientPackage);
-                }
+        boolean isInsideClientPkg = false;
+        for (FileObject clientPkg : clientPackage) {
+            if (clientPkg != null
+                    && FileUtil.isParentOf(clientPkg, info.getFileObject()))
+            {
+                isInsideClientPkg = true;
+                break;
             }
         }
-        catch (IOException e) {
-            Logger.getLogger(ConnectorAnalyzer.class.getName()).log(Level.INFO,
-                    null, e);
+
+        if (!isInsideClientPkg) {
+            List<Integer> positions =
+                    AbstractJavaFix.getElementPosition(info, type);
+            myNotClientPackage =
+                    ErrorDescriptionFactory.createErrorDescription(
+                            getSeverity(Severity.ERROR),
+                            Bundle.notClientPackage(getPackages(clientPkgFqn)),
+                            createRelocationFixes(gwtXml, clientPackage,
+                                    clientPkgFqn), info.getFileObject(),
+                            positions.get(0), positions.get(1));
+            getDescriptions().add(myNotClientPackage);
         }
     }
 
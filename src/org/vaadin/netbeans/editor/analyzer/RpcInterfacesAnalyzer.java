@@ -24,8 +24,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
@@ -53,7 +51,6 @@ import org.openide.filesystems.FileUtil;
 import org.openide.util.NbBundle;
 import org.vaadin.netbeans.IsInSourceQuery;
 import org.vaadin.netbeans.VaadinSupport;
-import org.vaadin.netbeans.model.ModelOperation;
 import org.vaadin.netbeans.model.VaadinModel;
 import org.vaadin.netbeans.utils.XmlUtils;
 
@@ -109,39 +106,26 @@ public class RpcInterfacesAnalyzer extends AbstractJavaBeanAnalyzer {
         if (support == null || !support.isEnabled() || !support.isReady()) {
             return false;
         }
-        final boolean[] isInClient = new boolean[1];
+        VaadinModel model = support.getModel();
+        FileObject gwtXml = model.getGwtXml();
+        if (gwtXml == null) {
+            return false;
+        }
         try {
-            support.runModelOperation(new ModelOperation() {
-
-                @Override
-                public void run( VaadinModel model ) {
-                    FileObject gwtXml = model.getGwtXml();
-                    if (gwtXml == null) {
-                        return;
-                    }
-                    try {
-                        for (String path : model.getSourcePaths()) {
-                            FileObject clientPkg =
-                                    XmlUtils.getClientWidgetPackage(gwtXml,
-                                            path, false);
-                            if (clientPkg != null
-                                    && FileUtil.isParentOf(clientPkg, getInfo()
-                                            .getFileObject()))
-                            {
-                                isInClient[0] = true;
-                            }
-                        }
-                    }
-                    catch (IOException ignore) {
-                    }
+            for (String path : model.getSourcePaths()) {
+                FileObject clientPkg =
+                        XmlUtils.getClientWidgetPackage(gwtXml, path, false);
+                if (clientPkg != null
+                        && FileUtil.isParentOf(clientPkg, getInfo()
+                                .getFileObject()))
+                {
+                    return true;
                 }
-            });
+            }
         }
-        catch (IOException e) {
-            Logger.getLogger(RpcInterfacesAnalyzer.class.getName()).log(
-                    Level.INFO, null, e);
+        catch (IOException ignore) {
         }
-        return isInClient[0];
+        return false;
     }
 
     public List<ErrorDescription> getTypeVarParameterDeclarations() {
@@ -15,7 +15,6 @@
  */
 package org.vaadin.netbeans.editor.analyzer;
 
-import java.io.IOException;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -35,8 +34,6 @@ import org.netbeans.spi.java.hints.HintContext;
 import org.openide.util.NbBundle;
 import org.vaadin.netbeans.VaadinSupport;
 import org.vaadin.netbeans.editor.hints.Analyzer;
-import org.vaadin.netbeans.model.ModelOperation;
-import org.vaadin.netbeans.model.VaadinModel;
 import org.vaadin.netbeans.utils.JavaUtils;
 
 /**
@@ -68,19 +65,7 @@ public class RpcRegistrationAnalyzer extends Analyzer {
         if (support == null || !support.isEnabled() || !support.isReady()) {
             return;
         }
-        final boolean[] hasGwtXml = new boolean[1];
-        try {
-            support.runModelOperation(new ModelOperation() {
-
-                @Override
-                public void run( VaadinModel model ) {
-                    hasGwtXml[0] = model.getGwtXml() != null;
-                }
-            });
-        }
-        catch (IOException ignore) {
-        }
-        if (!hasGwtXml[0]) {
+        if (support.getModel().getGwtXml() == null) {
             return;
         }
 
@@ -15,12 +15,9 @@
  */
 package org.vaadin.netbeans.editor.analyzer;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.TypeElement;
@@ -36,8 +33,6 @@ import org.openide.filesystems.FileObject;
 import org.openide.util.NbBundle;
 import org.vaadin.netbeans.VaadinSupport;
 import org.vaadin.netbeans.editor.hints.Analyzer;
-import org.vaadin.netbeans.model.ModelOperation;
-import org.vaadin.netbeans.model.VaadinModel;
 import org.vaadin.netbeans.utils.JavaUtils;
 
 import com.sun.source.tree.AnnotationTree;
@@ -102,26 +97,13 @@ public class VaadinServletConfigurationAnalyzer extends Analyzer {
         }
 
         String widgetset = JavaUtils.getValue(config, JavaUtils.WIDGETSET);
-        final FileObject[] gwtXml = new FileObject[1];
-        try {
-            support.runModelOperation(new ModelOperation() {
-
-                @Override
-                public void run( VaadinModel model ) {
-                    gwtXml[0] = model.getGwtXml();
-                }
-            });
-        }
-        catch (IOException e) {
-            Logger.getLogger(VaadinServletConfigurationAnalyzer.class.getName())
-                    .log(Level.INFO, null, e);
-        }
+        FileObject gwtXml = support.getModel().getGwtXml();
 
         if (isCanceled()) {
             return;
         }
 
-        if (gwtXml[0] == null) {
+        if (gwtXml == null) {
             if (widgetset != null) {
                 AnnotationTree annotationTree =
                         (AnnotationTree) info.getTrees().getTree(type, config);
@@ -147,7 +129,7 @@ public class VaadinServletConfigurationAnalyzer extends Analyzer {
             }
             return;
         }
-        String foundWidgetset = AbstractJavaFix.getWidgetsetFqn(gwtXml[0]);
+        String foundWidgetset = AbstractJavaFix.getWidgetsetFqn(gwtXml);
         if (widgetset == null) {
             AnnotationTree annotationTree =
                     (AnnotationTree) info.getTrees().getTree(type, config);
@@ -15,15 +15,12 @@
  */
 package org.vaadin.netbeans.editor.analyzer;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Modifier;
@@ -40,8 +37,6 @@ import org.openide.filesystems.FileObject;
 import org.openide.util.NbBundle;
 import org.vaadin.netbeans.VaadinSupport;
 import org.vaadin.netbeans.editor.hints.Analyzer;
-import org.vaadin.netbeans.model.ModelOperation;
-import org.vaadin.netbeans.model.VaadinModel;
 import org.vaadin.netbeans.utils.JavaUtils;
 
 import com.sun.source.tree.AnnotationTree;
@@ -110,20 +105,7 @@ public class WebServletAnalyzer extends Analyzer {
             return;
         }
 
-        final FileObject[] gwtXml = new FileObject[1];
-        try {
-            support.runModelOperation(new ModelOperation() {
-
-                @Override
-                public void run( VaadinModel model ) {
-                    gwtXml[0] = model.getGwtXml();
-                }
-            });
-        }
-        catch (IOException e) {
-            Logger.getLogger(VaadinServletConfigurationAnalyzer.class.getName())
-                    .log(Level.INFO, null, e);
-        }
+        FileObject gwtXml = support.getModel().getGwtXml();
 
         if (isCanceled()) {
             return;
@@ -141,10 +123,10 @@ public class WebServletAnalyzer extends Analyzer {
             }
             else {
                 if (widgetset == null) {
-                    noWidgetsetVaadinServlet(gwtXml[0], servlet);
+                    noWidgetsetVaadinServlet(gwtXml, servlet);
                 }
                 else {
-                    checkWidgetset(widgetset, gwtXml[0], servlet);
+                    checkWidgetset(widgetset, gwtXml, servlet);
                 }
             }
         }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.lang.model.element.TypeElement;
+
+import org.netbeans.api.java.source.CompilationInfo;
+import org.vaadin.netbeans.model.SourceDescendantsStrategy;
+
+/**
+ * Delegates descendants queries to the strategy chosen for the project.
+ *
+ * The choice is made by measurements: each candidate serves queries until
+ * {@value #SAMPLES} of its calls are timed and the candidate with the least
+ * median latency is chosen. Only calls which do real work are timed: calls
+ * which build caches of a {@link CachingStrategy} or are answered from its
+ * memoized results are skipped. Candidates are measured in the given order,
+ * the last one is the last resort: it's measured only if all the others are
+ * slow, so its (possibly expensive) caches are not built otherwise. The
+ * choice is re-evaluated periodically and after large types changes.
+ *
+ * @author denis
+ */
+class AdaptiveStrategy implements SourceDescendantsStrategy {
+
+    private static final int SAMPLES = 5;
+
+    private static final long SLOW_QUERY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int REEVALUATION_PERIOD = 1000;
+
+    private static final int TYPES_DELTA = 200;
+
+    private static final Logger LOG = Logger.getLogger(AdaptiveStrategy.class
+            .getName());
+
+    /**
+     * Strategy which keeps caches.
+     */
+    interface CachingStrategy extends SourceDescendantsStrategy {
+
+        /**
+         * Builds the caches if they are not built yet.
+         */
+        void warmUp( CompilationInfo info ) throws InterruptedException;
+
+        /**
+         * @return {@code true} if the caches are built
+         */
+        boolean isWarm();
+
+        /**
+         * @return {@code true} if descendants of the {@code type} are
+         *         memoized
+         */
+        boolean isMemoized( TypeElement type );
+    }
+
+    AdaptiveStrategy( SourceDescendantsStrategy... candidates ) {
+        myCandidates = candidates;
+        mySamples = new long[candidates.length][SAMPLES];
+        myCounts = new int[candidates.length];
+    }
+
+    @Override
+    public Collection<TypeElement> getSourceSubclasses( TypeElement type,
+            CompilationInfo info ) throws InterruptedException
+    {
+        int index = mySelected;
+        SourceDescendantsStrategy strategy = myCandidates[index];
+        boolean measured = isMeasurable(strategy, type);
+        long start = System.nanoTime();
+        Collection<TypeElement> result =
+                strategy.getSourceSubclasses(type, info);
+        record(index, measured ? System.nanoTime() - start : -1);
+        return result;
+    }
+
+    @Override
+    public Collection<TypeElement> getSourceSubInterfaces( TypeElement type,
+            CompilationInfo info ) throws InterruptedException
+    {
+        int index = mySelected;
+        SourceDescendantsStrategy strategy = myCandidates[index];
+        boolean measured = isMeasurable(strategy, type);
+        long start = System.nanoTime();
+        Collection<TypeElement> result =
+                strategy.getSourceSubInterfaces(type, info);
+        record(index, measured ? System.nanoTime() - start : -1);
+        return result;
+    }
+
+    /**
+     * Builds caches of the currently selected candidate.
+     */
+    void warmUp( CompilationInfo info ) throws InterruptedException {
+        SourceDescendantsStrategy strategy = myCandidates[mySelected];
+        if (strategy instanceof CachingStrategy) {
+            ((CachingStrategy) strategy).warmUp(info);
+        }
+    }
+
+    /**
+     * Accumulates number of added, changed and removed types, the choice is
+     * re-evaluated once the number is large.
+     */
+    synchronized void typesChanged( int count ) {
+        myTypesDelta += count;
+        if (myTypesDelta >= TYPES_DELTA) {
+            startRound();
+        }
+    }
+
+    private boolean isMeasurable( SourceDescendantsStrategy strategy,
+            TypeElement type )
+    {
+        if (strategy instanceof CachingStrategy) {
+            CachingStrategy cachingStrategy = (CachingStrategy) strategy;
+            return cachingStrategy.isWarm()
+                    && !cachingStrategy.isMemoized(type);
+        }
+        return true;
+    }
+
+    private synchronized void record( int index, long nanos ) {
+        if (index != mySelected) {
+            return;
+        }
+        myCalls++;
+        if (nanos >= 0) {
+            mySamples[index][myCounts[index] % SAMPLES] = nanos;
+            myCounts[index]++;
+        }
+        if (isDecided) {
+            if (myCalls >= REEVALUATION_PERIOD) {
+                startRound();
+            }
+            return;
+        }
+        if (myCounts[index] < SAMPLES) {
+            return;
+        }
+        int next = getNextCandidate();
+        if (next == -1) {
+            decide();
+        }
+        else {
+            mySelected = next;
+        }
+    }
+
+    /**
+     * Starts measurements from the currently selected candidate: its caches
+     * are warm.
+     */
+    private void startRound() {
+        Arrays.fill(myCounts, 0);
+        myCalls = 0;
+        myTypesDelta = 0;
+        isDecided = false;
+    }
+
+    /**
+     * @return the first candidate which is not measured in the current round,
+     *         -1 if there is no such candidate
+     */
+    private int getNextCandidate() {
+        int last = myCandidates.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (myCounts[i] < SAMPLES) {
+                return i;
+            }
+        }
+        if (myCounts[last] < SAMPLES && isSlow()) {
+            return last;
+        }
+        return -1;
+    }
+
+    /**
+     * @return {@code true} if all measured candidates are slow
+     */
+    private boolean isSlow() {
+        for (int i = 0; i < myCandidates.length; i++) {
+            if (myCounts[i] >= SAMPLES && getMedian(i) <= SLOW_QUERY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long getMedian( int index ) {
+        long[] samples = Arrays.copyOf(mySamples[index],
+                Math.min(myCounts[index], SAMPLES));
+        Arrays.sort(samples);
+        return samples[samples.length / 2];
+    }
+
+    private void decide() {
+        int best = mySelected;
+        for (int i = 0; i < myCandidates.length; i++) {
+            if (myCounts[i] >= SAMPLES && getMedian(i) < getMedian(best)) {
+                best = i;
+            }
+        }
+        mySelected = best;
+        myCalls = 0;
+        isDecided = true;
+        LOG.log(Level.FINE,
+                "Descendants strategy {0} is chosen ({1} ms median query time)", // NOI18N
+                new Object[] { myCandidates[best].getClass().getSimpleName(),
+                        TimeUnit.NANOSECONDS.toMillis(getMedian(best)) });
+    }
+
+    private final SourceDescendantsStrategy[] myCandidates;
+
+    private final long[][] mySamples;
+
+    private final int[] myCounts;
+
+    private int myCalls;
+
+    private int myTypesDelta;
+
+    private volatile int mySelected;
+
+    private boolean isDecided;
+}
@@ -17,85 +17,305 @@ package org.vaadin.netbeans.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
 
 import org.netbeans.api.java.source.ClassIndex.NameKind;
 import org.netbeans.api.java.source.ClassIndex.SearchScope;
 import org.netbeans.api.java.source.CompilationInfo;
 import org.netbeans.api.java.source.ElementHandle;
-import org.vaadin.netbeans.model.SourceDescendantsStrategy;
+import org.vaadin.netbeans.utils.JavaUtils;
 
 /**
+ * Keeps handles of all source classes and interfaces of the project.
+ *
+ * The structure is long-lived: added, changed and removed types are applied
+ * in place. Descendants of each queried supertype are memoized until a type
+ * event which could affect them is received: a removed type invalidates
+ * memoized sets which contain it, an added or changed type invalidates sets
+ * of its old and new supertypes: its descendants could get new supertypes as
+ * well, but only those from the closures of the type. Type events received
+ * while the types are being collected are queued and applied once the
+ * collection is done. Queries don't block each other.
+ *
  * @author denis
  */
-class AllClassesStrategy implements SourceDescendantsStrategy {
+class AllClassesStrategy implements AdaptiveStrategy.CachingStrategy {
+
+    private static final String OBJECT = Object.class.getName();
+
+    AllClassesStrategy() {
+        myClasses =
+                Collections
+                        .newSetFromMap(new ConcurrentHashMap<ElementHandle<TypeElement>, Boolean>());
+        myInterfaces =
+                Collections
+                        .newSetFromMap(new ConcurrentHashMap<ElementHandle<TypeElement>, Boolean>());
+        myDescendants = new ConcurrentHashMap<>();
+        myGeneration = new AtomicLong();
+        myInitLock = new Object();
+        myPending = new LinkedHashMap<>();
+    }
 
     @Override
-    public synchronized Collection<TypeElement> getSourceSubclasses(
-            TypeElement type, CompilationInfo info )
-            throws InterruptedException
+    public Collection<TypeElement> getSourceSubclasses( TypeElement type,
+            CompilationInfo info ) throws InterruptedException
     {
-        return collectDescendants(type, info, true);
+        return collectDescendants(type, info, ElementKind.CLASS);
     }
 
     @Override
-    public synchronized Collection<TypeElement> getSourceSubInterfaces(
-            TypeElement type, CompilationInfo info )
-            throws InterruptedException
+    public Collection<TypeElement> getSourceSubInterfaces( TypeElement type,
+            CompilationInfo info ) throws InterruptedException
+    {
+        return collectDescendants(type, info, ElementKind.INTERFACE);
+    }
+
+    @Override
+    public void warmUp( CompilationInfo info ) throws InterruptedException {
+        initTypes(info);
+    }
+
+    @Override
+    public boolean isWarm() {
+        return isInitialized;
+    }
+
+    @Override
+    public boolean isMemoized( TypeElement type ) {
+        return myDescendants.containsKey(ElementHandle.create(type)
+                .getBinaryName());
+    }
+
+    void update( Iterable<? extends ElementHandle<TypeElement>> handles,
+            CompilationInfo info )
     {
-        return collectDescendants(type, info, false);
+        synchronized (myPending) {
+            if (isInitializing) {
+                for (ElementHandle<TypeElement> handle : handles) {
+                    myPending.remove(handle);
+                    myPending.put(handle, Boolean.FALSE);
+                }
+                return;
+            }
+        }
+        if (isInitialized) {
+            doUpdate(handles, info);
+        }
+    }
+
+    void remove( Iterable<? extends ElementHandle<TypeElement>> handles ) {
+        synchronized (myPending) {
+            if (isInitializing) {
+                for (ElementHandle<TypeElement> handle : handles) {
+                    myPending.remove(handle);
+                    myPending.put(handle, Boolean.TRUE);
+                }
+                return;
+            }
+        }
+        if (isInitialized) {
+            doRemove(handles);
+        }
+    }
+
+    /**
+     * @return number of cached type handles including memoized descendants
+     */
+    int size() {
+        int size = myClasses.size() + myInterfaces.size();
+        for (Set<ElementHandle<TypeElement>> descendants : myDescendants
+                .values())
+        {
+            size += descendants.size();
+        }
+        return size;
+    }
+
+    void invalidate() {
+        synchronized (myInitLock) {
+            isInitialized = false;
+            myGeneration.incrementAndGet();
+            myClasses.clear();
+            myInterfaces.clear();
+            myDescendants.clear();
+        }
     }
 
     private Collection<TypeElement> collectDescendants( TypeElement type,
-            CompilationInfo info, boolean isClasses )
+            CompilationInfo info, ElementKind kind )
             throws InterruptedException
     {
         initTypes(info);
-        List<ElementHandle<TypeElement>> types = null;
-        if (isClasses) {
-            types = myClasses;
+        String name = ElementHandle.create(type).getBinaryName();
+        Set<ElementHandle<TypeElement>> descendants = myDescendants.get(name);
+        if (descendants == null) {
+            long generation = myGeneration.get();
+            descendants = collectDescendants(type, info);
+            myDescendants.put(name, descendants);
+            if (generation != myGeneration.get()) {
+                // type event has been received during calculation
+                myDescendants.remove(name, descendants);
+            }
         }
-        else {
-            types = myInterfaces;
+        List<TypeElement> result = new ArrayList<>(descendants.size());
+        for (ElementHandle<TypeElement> handle : descendants) {
+            if (!kind.equals(handle.getKind())) {
+                continue;
+            }
+            TypeElement clazz = handle.resolve(info);
+            if (clazz != null) {
+                result.add(clazz);
+            }
         }
-        return collectDescendants(type, info, types);
+        return result;
     }
 
-    private Collection<TypeElement> collectDescendants( TypeElement type,
-            CompilationInfo info, List<ElementHandle<TypeElement>> types )
+    private Set<ElementHandle<TypeElement>> collectDescendants(
+            TypeElement type, CompilationInfo info )
+    {
+        Set<ElementHandle<TypeElement>> result = new HashSet<>();
+        collectDescendants(type, info, myClasses, result);
+        collectDescendants(type, info, myInterfaces, result);
+        return Collections.unmodifiableSet(result);
+    }
+
+    private void collectDescendants( TypeElement type, CompilationInfo info,
+            Set<ElementHandle<TypeElement>> types,
+            Set<ElementHandle<TypeElement>> result )
     {
-        List<TypeElement> classes = new ArrayList<>();
         for (ElementHandle<TypeElement> handle : types) {
             TypeElement clazz = handle.resolve(info);
             if (clazz != null
                     && info.getTypes().isSubtype(clazz.asType(), type.asType()))
             {
-                classes.add(clazz);
+                result.add(handle);
+            }
+        }
+    }
+
+    private void doUpdate(
+            Iterable<? extends ElementHandle<TypeElement>> handles,
+            CompilationInfo info )
+    {
+        for (ElementHandle<TypeElement> handle : handles) {
+            myClasses.remove(handle);
+            myInterfaces.remove(handle);
+            TypeElement typeElement = handle.resolve(info);
+            if (typeElement != null) {
+                add(typeElement);
+            }
+            /*
+             * Changed supertypes of a type affect the type and all its
+             * descendants: they are memoized only for supertypes from the old
+             * closure of the type (those sets contain the type itself) and
+             * could appear in the sets of the new closure
+             */
+            invalidateContaining(handle);
+            myDescendants.remove(handle.getBinaryName());
+            myDescendants.remove(OBJECT);
+            if (typeElement != null) {
+                invalidateSupertypes(typeElement, info);
             }
         }
-        return classes;
     }
 
-    private void initTypes( CompilationInfo info ) throws InterruptedException {
-        if (myClasses == null) {
-            Set<TypeElement> allTypes =
-                    findAllTypes(info, EnumSet.allOf(ElementKind.class));
-            myClasses = new ArrayList<>(allTypes.size());
-            myInterfaces = new ArrayList<>(allTypes.size());
-            for (TypeElement typeElement : allTypes) {
-                if (typeElement.getKind().equals(ElementKind.INTERFACE)) {
-                    myInterfaces.add(ElementHandle.create(typeElement));
+    private void invalidateSupertypes( TypeElement type, CompilationInfo info )
+    {
+        for (TypeMirror mirror : JavaUtils.getSupertypes(type.asType(), info))
+        {
+            Element element = info.getTypes().asElement(mirror);
+            if (element instanceof TypeElement) {
+                myDescendants.remove(ElementHandle.create(
+                        (TypeElement) element).getBinaryName());
+            }
+        }
+    }
+
+    private void doRemove( Iterable<? extends ElementHandle<TypeElement>> handles )
+    {
+        for (ElementHandle<TypeElement> handle : handles) {
+            myClasses.remove(handle);
+            myInterfaces.remove(handle);
+            invalidateContaining(handle);
+        }
+    }
+
+    private void invalidateContaining( ElementHandle<TypeElement> handle ) {
+        myGeneration.incrementAndGet();
+        for (Iterator<Set<ElementHandle<TypeElement>>> iterator =
+                myDescendants.values().iterator(); iterator.hasNext();)
+        {
+            if (iterator.next().contains(handle)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    void initTypes( CompilationInfo info ) throws InterruptedException {
+        if (isInitialized) {
+            return;
+        }
+        synchronized (myInitLock) {
+            if (isInitialized) {
+                return;
+            }
+            synchronized (myPending) {
+                isInitializing = true;
+            }
+            try {
+                Set<TypeElement> allTypes =
+                        findAllTypes(info, EnumSet.allOf(ElementKind.class));
+                for (TypeElement typeElement : allTypes) {
+                    add(typeElement);
                 }
-                else if (typeElement.getKind().equals(ElementKind.CLASS)) {
-                    myClasses.add(ElementHandle.create(typeElement));
+            }
+            finally {
+                synchronized (myPending) {
+                    applyPending(info);
+                    isInitializing = false;
                 }
             }
+            isInitialized = true;
+        }
+    }
+
+    private void applyPending( CompilationInfo info ) {
+        for (Entry<ElementHandle<TypeElement>, Boolean> entry : myPending
+                .entrySet())
+        {
+            List<ElementHandle<TypeElement>> handles =
+                    Collections.singletonList(entry.getKey());
+            if (entry.getValue()) {
+                doRemove(handles);
+            }
+            else {
+                doUpdate(handles, info);
+            }
+        }
+        myPending.clear();
+    }
+
+    private void add( TypeElement typeElement ) {
+        if (typeElement.getKind().equals(ElementKind.INTERFACE)) {
+            myInterfaces.add(ElementHandle.create(typeElement));
+        }
+        else if (typeElement.getKind().equals(ElementKind.CLASS)) {
+            myClasses.add(ElementHandle.create(typeElement));
         }
     }
 
@@ -123,7 +343,19 @@ class AllClassesStrategy implements SourceDescendantsStrategy {
         return result;
     }
 
-    private List<ElementHandle<TypeElement>> myClasses;
+    private final Set<ElementHandle<TypeElement>> myClasses;
+
+    private final Set<ElementHandle<TypeElement>> myInterfaces;
+
+    private final ConcurrentHashMap<String, Set<ElementHandle<TypeElement>>> myDescendants;
+
+    private final AtomicLong myGeneration;
+
+    private final Object myInitLock;
+
+    private final Map<ElementHandle<TypeElement>, Boolean> myPending;
+
+    private volatile boolean isInitialized;
 
-    private List<ElementHandle<TypeElement>> myInterfaces;
+    private boolean isInitializing;
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Content checksums of the resources copied into the build output folder.
+ *
+ * Editor save touches the file even if its content is not changed. The cache
+ * allows to skip copying such file so the GWT code server doesn't reload
+ * unchanged resources.
+ *
+ * @author denis
+ */
+final class ContentHashCache {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    ContentHashCache() {
+        myEntries = new ConcurrentHashMap<>();
+        myHits = new AtomicLong();
+        myMisses = new AtomicLong();
+    }
+
+    /**
+     * Copies {@code source} into {@code target} unless {@code target} has been
+     * created from the same {@code source} content and hasn't been modified
+     * since then.
+     *
+     * The source checksum is computed once: either to compare it with the
+     * remembered one or while copying the content.
+     *
+     * @return {@code true} if the file has been copied
+     */
+    boolean copy( File source, File target ) throws IOException {
+        Entry entry = myEntries.get(source);
+        if (entry != null && entry.getTarget().equals(target)
+                && entry.getTargetTimestamp() == target.lastModified()
+                && target.length() == source.length())
+        {
+            long checksum = checksum(source);
+            if (entry.getChecksum() == checksum) {
+                myHits.incrementAndGet();
+                return false;
+            }
+            Files.copy(source.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.COPY_ATTRIBUTES);
+            remember(source, target, checksum);
+        }
+        else {
+            remember(source, target, copyContent(source, target));
+        }
+        myMisses.incrementAndGet();
+        return true;
+    }
+
+    void clear() {
+        myEntries.clear();
+    }
+
+    /**
+     * @return number of copies skipped because content wasn't changed
+     */
+    long getHits() {
+        return myHits.get();
+    }
+
+    /**
+     * @return number of copies done because content was changed or unknown
+     */
+    long getMisses() {
+        return myMisses.get();
+    }
+
+    private void remember( File source, File target, long checksum ) {
+        myEntries.put(source,
+                new Entry(target, target.lastModified(), checksum));
+    }
+
+    private static long copyContent( File source, File target )
+            throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream inputStream = new FileInputStream(source);
+        try {
+            OutputStream outputStream = new FileOutputStream(target);
+            try {
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                    outputStream.write(buffer, 0, read);
+                }
+            }
+            finally {
+                outputStream.close();
+            }
+        }
+        finally {
+            inputStream.close();
+        }
+        target.setLastModified(source.lastModified());
+        return crc.getValue();
+    }
+
+    private static long checksum( File file ) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        finally {
+            inputStream.close();
+        }
+        return crc.getValue();
+    }
+
+    private static final class Entry {
+
+        Entry( File target, long targetTimestamp, long checksum ) {
+            myTarget = target;
+            myTargetTimestamp = targetTimestamp;
+            myChecksum = checksum;
+        }
+
+        File getTarget() {
+            return myTarget;
+        }
+
+        long getTargetTimestamp() {
+            return myTargetTimestamp;
+        }
+
+        long getChecksum() {
+            return myChecksum;
+        }
+
+        private final File myTarget;
+
+        private final long myTargetTimestamp;
+
+        private final long myChecksum;
+    }
+
+    private final Map<File, Entry> myEntries;
+
+    private final AtomicLong myHits;
+
+    private final AtomicLong myMisses;
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.SourceGroup;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.vaadin.netbeans.utils.JavaUtils;
+import org.vaadin.netbeans.utils.XmlUtils;
+
+/**
+ * Index of GWT module descriptors (*.gwt.xml) in the project source roots.
+ *
+ * The index is built once on the first request and kept up to date via file
+ * events. Modules are ordered by their source root (java roots first, then
+ * resources roots) and FQN so the result doesn't depend on the file system
+ * children order. If several roots contain the same module only the module
+ * from the first root is visible, the others are kept to replace it once it's
+ * deleted.
+ *
+ * @author denis
+ */
+final class GwtModuleIndex {
+
+    GwtModuleIndex( Project project ) {
+        myProject = project;
+    }
+
+    /**
+     * @return GWT module descriptor for the module {@code fqn}
+     */
+    synchronized FileObject find( String fqn ) {
+        init();
+        List<Module> modules = myModules.get(fqn);
+        return modules == null ? null : modules.get(0).getFile();
+    }
+
+    /**
+     * @return GWT module descriptors located directly in the package
+     *         {@code pkg}
+     */
+    synchronized List<FileObject> findInPackage( String pkg ) {
+        init();
+        List<FileObject> result = new ArrayList<>();
+        for (Module module : getSortedModules()) {
+            if (pkg.equals(module.getPackage())) {
+                result.add(module.getFile());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return GWT module descriptors ordered by their source root and FQN
+     */
+    synchronized List<FileObject> getModules() {
+        init();
+        List<Module> modules = getSortedModules();
+        List<FileObject> result = new ArrayList<>(modules.size());
+        for (Module module : modules) {
+            result.add(module.getFile());
+        }
+        return result;
+    }
+
+    synchronized FileObject getFirst() {
+        init();
+        List<Module> modules = getSortedModules();
+        return modules.isEmpty() ? null : modules.get(0).getFile();
+    }
+
+    synchronized void fileCreated( FileObject file ) {
+        if (myModules == null) {
+            return;
+        }
+        if (file.isFolder()) {
+            collect(file, getRoots());
+        }
+        else if (file.getNameExt().endsWith(XmlUtils.GWT_XML)) {
+            add(file, getRoots());
+        }
+    }
+
+    synchronized void fileRenamed( FileObject file ) {
+        if (myModules == null) {
+            return;
+        }
+        if (file.isFolder()) {
+            // FQNs of all nested modules are changed
+            invalidate();
+            return;
+        }
+        removeModules(file);
+        if (file.getNameExt().endsWith(XmlUtils.GWT_XML)) {
+            add(file, getRoots());
+        }
+    }
+
+    synchronized void fileDeleted( FileObject file ) {
+        if (myModules == null) {
+            return;
+        }
+        if (file.isFolder()) {
+            removeModules(null);
+        }
+        else {
+            removeModules(file);
+        }
+    }
+
+    /**
+     * @return number of indexed modules including modules hidden by the same
+     *         modules from preceding roots, 0 if the index is not built
+     */
+    synchronized int size() {
+        if (myModules == null) {
+            return 0;
+        }
+        int size = 0;
+        for (List<Module> modules : myModules.values()) {
+            size += modules.size();
+        }
+        return size;
+    }
+
+    synchronized void invalidate() {
+        myModules = null;
+        mySortedModules = null;
+    }
+
+    private void init() {
+        if (myModules != null) {
+            return;
+        }
+        myModules = new TreeMap<>();
+        List<FileObject> roots = getRoots();
+        for (FileObject root : roots) {
+            collect(root, roots);
+        }
+    }
+
+    private void collect( FileObject folder, List<FileObject> roots ) {
+        for (FileObject child : folder.getChildren()) {
+            if (child.isFolder()) {
+                collect(child, roots);
+            }
+            else if (child.getNameExt().endsWith(XmlUtils.GWT_XML)) {
+                add(child, roots);
+            }
+        }
+    }
+
+    private void add( FileObject file, List<FileObject> roots ) {
+        for (int i = 0; i < roots.size(); i++) {
+            FileObject root = roots.get(i);
+            if (FileUtil.isParentOf(root, file)) {
+                String path = FileUtil.getRelativePath(root, file);
+                String fqn =
+                        path.substring(0,
+                                path.length() - XmlUtils.GWT_XML.length())
+                                .replace('/', '.');
+                List<Module> modules = myModules.get(fqn);
+                if (modules == null) {
+                    modules = new ArrayList<>(1);
+                    myModules.put(fqn, modules);
+                }
+                for (Module module : modules) {
+                    if (module.getFile().equals(file)) {
+                        return;
+                    }
+                }
+                modules.add(new Module(file, fqn, i));
+                Collections.sort(modules);
+                mySortedModules = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes modules of the {@code file} or all modules with invalid files
+     * if the {@code file} is null. The same module from another root becomes
+     * visible instead of the removed one.
+     */
+    private void removeModules( FileObject file ) {
+        for (Iterator<List<Module>> iterator =
+                myModules.values().iterator(); iterator.hasNext();)
+        {
+            List<Module> modules = iterator.next();
+            for (Iterator<Module> it = modules.iterator(); it.hasNext();) {
+                FileObject moduleFile = it.next().getFile();
+                if (file == null ? !moduleFile.isValid() : moduleFile
+                        .equals(file))
+                {
+                    it.remove();
+                    mySortedModules = null;
+                }
+            }
+            if (modules.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private List<Module> getSortedModules() {
+        if (mySortedModules == null) {
+            List<Module> modules = new ArrayList<>(myModules.size());
+            for (List<Module> list : myModules.values()) {
+                modules.add(list.get(0));
+            }
+            Collections.sort(modules);
+            mySortedModules = modules;
+        }
+        return mySortedModules;
+    }
+
+    private List<FileObject> getRoots() {
+        List<FileObject> roots = new ArrayList<>();
+        for (SourceGroup group : JavaUtils.getJavaSourceGroups(myProject)) {
+            roots.add(group.getRootFolder());
+        }
+        for (SourceGroup group : JavaUtils.getResourcesSourceGroups(myProject))
+        {
+            roots.add(group.getRootFolder());
+        }
+        return roots;
+    }
+
+    private static final class Module implements Comparable<Module> {
+
+        Module( FileObject file, String fqn, int rootIndex ) {
+            myFile = file;
+            myFqn = fqn;
+            myRootIndex = rootIndex;
+        }
+
+        @Override
+        public int compareTo( Module module ) {
+            if (myRootIndex != module.myRootIndex) {
+                return myRootIndex < module.myRootIndex ? -1 : 1;
+            }
+            return myFqn.compareTo(module.myFqn);
+        }
+
+        FileObject getFile() {
+            return myFile;
+        }
+
+        String getPackage() {
+            int index = myFqn.lastIndexOf('.');
+            return index == -1 ? "" : myFqn.substring(0, index);
+        }
+
+        private final FileObject myFile;
+
+        private final String myFqn;
+
+        private final int myRootIndex;
+    }
+
+    private final Project myProject;
+
+    private Map<String, List<Module>> myModules;
+
+    private List<Module> mySortedModules;
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.impl;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.netbeans.api.project.Project;
+import org.vaadin.netbeans.utils.Scheduler;
+import org.vaadin.netbeans.utils.Scheduler.Lane;
+
+/**
+ * Staged project initialization.
+ *
+ * Each stage is posted separately to the project lane of the plugin
+ * scheduler so stages of different projects are interleaved instead of one
+ * project occupying a thread for the whole initialization. A stage may
+ * complete asynchronously (e.g. once a parsing task waiting for the end of
+ * scanning is done), the lane thread is not blocked meanwhile. The pipeline
+ * is cancelled between stages.
+ *
+ * @author denis
+ */
+final class InitPipeline implements Runnable {
+
+    private static final Logger LOG = Logger.getLogger(InitPipeline.class
+            .getName());
+
+    enum Stage {
+        CLASSPATH,
+        ENABLEMENT,
+        LISTENERS,
+        SERVLET_MODEL,
+        GWT_MODULE,
+        WARM_UP;
+    }
+
+    interface StageTask {
+
+        /**
+         * Runs the stage. The stage is done once the {@code result} is
+         * completed, it may happen after the method returns. Exception
+         * completes the stage and skips the rest of the pipeline.
+         */
+        void run( StageResult result ) throws Exception;
+    }
+
+    /**
+     * Completion of one stage. Only the first completion counts.
+     */
+    final class StageResult {
+
+        private StageResult( Stage stage ) {
+            myStage = stage;
+            myStart = System.currentTimeMillis();
+            isDone = new AtomicBoolean();
+        }
+
+        /**
+         * Completes the stage.
+         * 
+         * @param proceed
+         *            {@code false} if the rest of the pipeline should be
+         *            skipped
+         */
+        void complete( boolean proceed ) {
+            if (isDone.compareAndSet(false, true)) {
+                completed(myStage, proceed, System.currentTimeMillis()
+                        - myStart);
+            }
+        }
+
+        /**
+         * Completes the stage because of the {@code exception} thrown by the
+         * stage work. The rest of the pipeline is skipped.
+         */
+        void fail( Throwable exception ) {
+            if (exception instanceof InterruptedException) {
+                LOG.log(Level.FINE, null, exception);
+            }
+            else {
+                LOG.log(Level.INFO, null, exception);
+            }
+            complete(false);
+        }
+
+        private final Stage myStage;
+
+        private final long myStart;
+
+        private final AtomicBoolean isDone;
+    }
+
+    InitPipeline( Project project ) {
+        myProject = project;
+        myStages = new ArrayList<>(Stage.values().length);
+        myTasks = new ArrayList<>(Stage.values().length);
+        myTimings = new EnumMap<>(Stage.class);
+    }
+
+    @Override
+    public void run() {
+        if (isCancelled || myCurrent >= myStages.size()) {
+            return;
+        }
+        StageResult result = new StageResult(myStages.get(myCurrent));
+        try {
+            myTasks.get(myCurrent).run(result);
+        }
+        catch (Exception e) {
+            result.fail(e);
+        }
+    }
+
+    InitPipeline add( Stage stage, StageTask task ) {
+        myStages.add(stage);
+        myTasks.add(task);
+        return this;
+    }
+
+    void start() {
+        post();
+    }
+
+    /**
+     * Cancels the pipeline. Pending stage is dropped as stale once the next
+     * pipeline of the project is started.
+     */
+    void cancel() {
+        isCancelled = true;
+    }
+
+    /**
+     * @return durations in milliseconds of the stages done so far
+     */
+    Map<Stage, Long> getTimings() {
+        synchronized (myTimings) {
+            return new EnumMap<>(myTimings);
+        }
+    }
+
+    private void completed( Stage stage, boolean proceed, long time ) {
+        synchronized (myTimings) {
+            myTimings.put(stage, time);
+        }
+        myCurrent++;
+        if (proceed && !isCancelled && myCurrent < myStages.size()) {
+            post();
+        }
+        else {
+            LOG.log(Level.FINE, "Initialization of the project {0}{1}: {2}", // NOI18N
+                    new Object[] { myProject.getProjectDirectory(),
+                            isCancelled ? " (cancelled)" // NOI18N
+                            : "", getTimingsReport() }); // NOI18N
+        }
+    }
+
+    private void post() {
+        Scheduler.getInstance().post(Lane.PROJECT, myProject,
+                InitPipeline.class, this);
+    }
+
+    private String getTimingsReport() {
+        StringBuilder builder = new StringBuilder();
+        for (Entry<Stage, Long> entry : getTimings().entrySet()) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(entry.getKey()).append(' ').append(entry.getValue())
+                    .append(" ms"); // NOI18N
+        }
+        return builder.toString();
+    }
+
+    private final Project myProject;
+
+    private final List<Stage> myStages;
+
+    private final List<StageTask> myTasks;
+
+    private final Map<Stage, Long> myTimings;
+
+    private volatile int myCurrent;
+
+    private volatile boolean isCancelled;
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.netbeans.modules.maven.model.ModelOperation;
+import org.netbeans.modules.maven.model.Utilities;
+import org.netbeans.modules.maven.model.pom.Configuration;
+import org.netbeans.modules.maven.model.pom.Dependency;
+import org.netbeans.modules.maven.model.pom.POMExtensibilityElement;
+import org.netbeans.modules.maven.model.pom.POMModel;
+import org.netbeans.modules.maven.model.pom.Plugin;
+import org.openide.filesystems.FileObject;
+import org.vaadin.netbeans.utils.POMUtils;
+
+/**
+ * Immutable view of the POM data used by the plugin. The whole data is read
+ * via one POM model operation.
+ *
+ * @author denis
+ */
+final class PomSnapshot {
+
+    private PomSnapshot( long timestamp, String version,
+            List<String> widgetsets, Map<String, String> pluginConfiguration,
+            List<String> dependencies )
+    {
+        myTimestamp = timestamp;
+        myVersion = version;
+        myWidgetsets = widgetsets;
+        myPluginConfiguration = pluginConfiguration;
+        myDependencies = dependencies;
+    }
+
+    /**
+     * @return value of the vaadin version property declared in the POM
+     */
+    String getVaadinVersion() {
+        return myVersion;
+    }
+
+    /**
+     * @return widgetsets declared in the manifest entries of the POM
+     */
+    List<String> getWidgetsets() {
+        return myWidgetsets;
+    }
+
+    /**
+     * @return vaadin maven plugin configuration parameters
+     */
+    Map<String, String> getPluginConfiguration() {
+        return myPluginConfiguration;
+    }
+
+    /**
+     * @return "groupId:artifactId" of dependencies declared in the POM
+     */
+    List<String> getDependencies() {
+        return myDependencies;
+    }
+
+    long getTimestamp() {
+        return myTimestamp;
+    }
+
+    static PomSnapshot read( FileObject pom ) {
+        long timestamp = pom.lastModified().getTime();
+        final String[] version = new String[1];
+        final List<String> widgetsets = new ArrayList<>();
+        final Map<String, String> pluginConfiguration = new LinkedHashMap<>();
+        final List<String> dependencies = new ArrayList<>();
+        ModelOperation<POMModel> operation = new ModelOperation<POMModel>() {
+
+            @Override
+            public void performOperation( POMModel model ) {
+                version[0] = POMUtils.getVaadinVersion(model);
+                POMExtensibilityElement element =
+                        POMUtils.getWidgetsets(model);
+                if (element != null) {
+                    widgetsets.addAll(parseWidgetsets(element
+                            .getElementText().trim()));
+                }
+                readPluginConfiguration(model, pluginConfiguration);
+                readDependencies(model, dependencies);
+            }
+        };
+        Utilities.performPOMModelOperations(pom,
+                Collections.singletonList(operation));
+        return new PomSnapshot(timestamp, version[0],
+                Collections.unmodifiableList(widgetsets),
+                Collections.unmodifiableMap(pluginConfiguration),
+                Collections.unmodifiableList(dependencies));
+    }
+
+    private static void readPluginConfiguration( POMModel model,
+            Map<String, String> params )
+    {
+        Plugin plugin = POMUtils.getVaadinPlugin(model);
+        Configuration configuration =
+                plugin == null ? null : plugin.getConfiguration();
+        if (configuration == null) {
+            return;
+        }
+        for (POMExtensibilityElement param : configuration
+                .getExtensibilityElements())
+        {
+            String value = param.getElementText();
+            params.put(param.getQName().getLocalPart(), value == null ? ""
+                    : value.trim());
+        }
+    }
+
+    private static void readDependencies( POMModel model,
+            List<String> result )
+    {
+        List<Dependency> dependencies = model.getProject().getDependencies();
+        if (dependencies == null) {
+            return;
+        }
+        for (Dependency dependency : dependencies) {
+            result.add(dependency.getGroupId() + ':'
+                    + dependency.getArtifactId());
+        }
+    }
+
+    private static List<String> parseWidgetsets( String widgetsets ) {
+        StringTokenizer tokenizer = new StringTokenizer(widgetsets, ",");
+        List<String> result = new ArrayList<>();
+        while (tokenizer.hasMoreTokens()) {
+            String nextWidgetset = tokenizer.nextToken().trim();
+            if (nextWidgetset.length() > 0) {
+                result.add(nextWidgetset);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Per project cache of POM snapshots. The snapshot is re-read when the POM
+     * file timestamp is changed or the cache is cleared on project reload.
+     */
+    static final class Cache {
+
+        Cache() {
+            mySnapshots = new ConcurrentHashMap<>();
+        }
+
+        PomSnapshot get( FileObject pom ) {
+            if (pom == null) {
+                return null;
+            }
+            PomSnapshot snapshot = mySnapshots.get(pom);
+            if (snapshot == null
+                    || snapshot.getTimestamp() != pom.lastModified().getTime())
+            {
+                snapshot = read(pom);
+                mySnapshots.put(pom, snapshot);
+            }
+            return snapshot;
+        }
+
+        void clear() {
+            mySnapshots.clear();
+        }
+
+        private final Map<FileObject, PomSnapshot> mySnapshots;
+    }
+
+    private final long myTimestamp;
+
+    private final String myVersion;
+
+    private final List<String> myWidgetsets;
+
+    private final Map<String, String> myPluginConfiguration;
+
+    private final List<String> myDependencies;
+}
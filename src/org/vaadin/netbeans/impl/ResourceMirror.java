@@ -0,0 +1,360 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openide.filesystems.FileUtil;
+import org.openide.util.RequestProcessor;
+import org.vaadin.netbeans.utils.Scheduler;
+import org.vaadin.netbeans.utils.Scheduler.Lane;
+
+/**
+ * Mirrors project resources into the build output folder while dev mode is
+ * running.
+ *
+ * Copy and delete requests are queued and coalesced per output file, the
+ * queue is flushed in the background. Each output file or folder created by
+ * the mirror is recorded in the journal so cleanup touches only those files.
+ * The journal is stored into the manifest file after each flush or cleanup,
+ * so outputs left from the previous session are removed on the next cleanup
+ * even if the IDE is not shut down properly.
+ *
+ * @author denis
+ */
+final class ResourceMirror implements Runnable {
+
+    private static final int FLUSH_DELAY = 100;
+
+    private static final File DELETED = new File("");
+
+    private static final int VERSION = 1;
+
+    private static final Logger LOG = Logger.getLogger(ResourceMirror.class
+            .getName());
+
+    ResourceMirror( Object project, File manifest ) {
+        myManifest = manifest;
+        myTask = Scheduler.getInstance().create(Lane.PROJECT, project, this);
+        myQueue = new LinkedHashMap<>();
+        myJournal = new HashSet<>();
+        myFolders = new HashSet<>();
+        myHashes = new ContentHashCache();
+    }
+
+    @Override
+    public void run() {
+        Map<File, File> queue;
+        synchronized (myQueue) {
+            queue = new LinkedHashMap<>(myQueue);
+            myQueue.clear();
+        }
+        if (queue.isEmpty()) {
+            return;
+        }
+        synchronized (myJournal) {
+            load();
+            for (Entry<File, File> entry : queue.entrySet()) {
+                File target = entry.getKey();
+                File source = entry.getValue();
+                try {
+                    if (source == DELETED) {
+                        doDelete(target.toPath());
+                    }
+                    else {
+                        doCopy(source, target);
+                    }
+                }
+                catch (IOException e) {
+                    LOG.log(Level.INFO, null, e);
+                }
+            }
+            store();
+        }
+        FileUtil.refreshFor(queue.keySet().toArray(new File[queue.size()]));
+    }
+
+    /**
+     * Schedules copying of the {@code source} file into {@code target}.
+     */
+    void copy( File source, File target ) {
+        enqueue(target, source);
+    }
+
+    /**
+     * Schedules removal of the {@code target} file or folder.
+     */
+    void delete( File target ) {
+        enqueue(target, DELETED);
+    }
+
+    /**
+     * Cancels pending requests and removes all files and folders created by
+     * the mirror.
+     */
+    void clean() {
+        LOG.log(Level.FINE, "Unchanged resources skipped: {0}, copied: {1}", // NOI18N
+                new Object[] { myHashes.getHits(), myHashes.getMisses() });
+        synchronized (myQueue) {
+            myQueue.clear();
+        }
+        myTask.cancel();
+        synchronized (myJournal) {
+            load();
+            if (!myJournal.isEmpty() || !myFolders.isEmpty()) {
+                isDirty = true;
+            }
+            for (File file : myJournal) {
+                try {
+                    Files.deleteIfExists(file.toPath());
+                }
+                catch (IOException e) {
+                    LOG.log(Level.INFO, null, e);
+                }
+            }
+            List<File> folders = new ArrayList<>(myFolders);
+            // nested folders go first
+            Collections.sort(folders, Collections.reverseOrder());
+            for (File folder : folders) {
+                String[] children = folder.list();
+                if (children != null && children.length == 0) {
+                    folder.delete();
+                }
+            }
+            List<File> removed = new ArrayList<>(myJournal.size()
+                    + folders.size());
+            removed.addAll(myJournal);
+            removed.addAll(folders);
+            myJournal.clear();
+            myFolders.clear();
+            myHashes.clear();
+            store();
+            if (!removed.isEmpty()) {
+                FileUtil.refreshFor(removed.toArray(new File[removed.size()]));
+            }
+        }
+    }
+
+    /**
+     * Writes the journal into the manifest file if it has been changed since
+     * the last store.
+     */
+    void store() {
+        synchronized (myJournal) {
+            if (!isDirty) {
+                return;
+            }
+            try {
+                if (myJournal.isEmpty() && myFolders.isEmpty()) {
+                    Files.deleteIfExists(myManifest.toPath());
+                    isDirty = false;
+                    return;
+                }
+                File parent = myManifest.getParentFile();
+                if (!parent.exists() && !parent.mkdirs()) {
+                    LOG.log(Level.WARNING,
+                            "Unable to create cache directory {0}", // NOI18N
+                            parent);
+                    return;
+                }
+                DataOutputStream stream =
+                        new DataOutputStream(new BufferedOutputStream(
+                                new FileOutputStream(myManifest)));
+                try {
+                    stream.writeInt(VERSION);
+                    write(stream, myJournal);
+                    write(stream, myFolders);
+                }
+                finally {
+                    stream.close();
+                }
+                isDirty = false;
+            }
+            catch (IOException e) {
+                LOG.log(Level.INFO, null, e);
+            }
+        }
+    }
+
+    private void load() {
+        if (isLoaded) {
+            return;
+        }
+        isLoaded = true;
+        if (!myManifest.exists()) {
+            return;
+        }
+        try {
+            DataInputStream stream =
+                    new DataInputStream(new BufferedInputStream(
+                            new FileInputStream(myManifest)));
+            try {
+                if (stream.readInt() != VERSION) {
+                    return;
+                }
+                read(stream, myJournal);
+                read(stream, myFolders);
+            }
+            finally {
+                stream.close();
+            }
+        }
+        catch (IOException e) {
+            LOG.log(Level.INFO, "Unable to read output manifest " + // NOI18N
+                    myManifest, e);
+            myJournal.clear();
+            myFolders.clear();
+        }
+    }
+
+    private static void write( DataOutputStream stream, Set<File> files )
+            throws IOException
+    {
+        stream.writeInt(files.size());
+        for (File file : files) {
+            stream.writeUTF(file.getPath());
+        }
+    }
+
+    private static void read( DataInputStream stream, Set<File> files )
+            throws IOException
+    {
+        int count = stream.readInt();
+        for (int i = 0; i < count; i++) {
+            files.add(new File(stream.readUTF()));
+        }
+    }
+
+    /**
+     * @return number of output files recorded in the journal
+     */
+    int size() {
+        synchronized (myJournal) {
+            return myJournal.size();
+        }
+    }
+
+    private void enqueue( File target, File source ) {
+        synchronized (myQueue) {
+            myQueue.remove(target);
+            myQueue.put(target, source);
+        }
+        myTask.schedule(FLUSH_DELAY);
+    }
+
+    private void doCopy( File source, File target ) throws IOException {
+        if (source.isDirectory()) {
+            createFolders(target);
+            return;
+        }
+        if (!source.exists()) {
+            return;
+        }
+        createFolders(target.getParentFile());
+        if (myHashes.copy(source, target)) {
+            isDirty |= myJournal.add(target);
+        }
+    }
+
+    private void createFolders( File folder ) throws IOException {
+        List<File> created = new ArrayList<>();
+        File parent = folder;
+        while (parent != null && !parent.exists()) {
+            created.add(parent);
+            parent = parent.getParentFile();
+        }
+        Files.createDirectories(folder.toPath());
+        isDirty |= myFolders.addAll(created);
+    }
+
+    private void doDelete( Path target ) throws IOException {
+        if (!Files.isDirectory(target)) {
+            Files.deleteIfExists(target);
+            isDirty |= myJournal.remove(target.toFile());
+            return;
+        }
+        Files.walkFileTree(target, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile( Path file,
+                    BasicFileAttributes attrs ) throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory( Path dir,
+                    IOException e ) throws IOException
+            {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        String prefix = target.toFile().getPath() + File.separatorChar;
+        for (Iterator<File> iterator = myJournal.iterator(); iterator
+                .hasNext();)
+        {
+            String path = iterator.next().getPath();
+            if (path.startsWith(prefix)) {
+                iterator.remove();
+                isDirty = true;
+            }
+        }
+    }
+
+    private final File myManifest;
+
+    private final RequestProcessor.Task myTask;
+
+    private final Map<File, File> myQueue;
+
+    private final Set<File> myJournal;
+
+    private final Set<File> myFolders;
+
+    private final ContentHashCache myHashes;
+
+    private boolean isLoaded;
+
+    private boolean isDirty;
+}
@@ -16,14 +16,7 @@
 package org.vaadin.netbeans.impl;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
-import org.netbeans.api.java.source.CompilationController;
-import org.netbeans.api.java.source.Task;
 import org.netbeans.api.project.FileOwnerQuery;
 import org.netbeans.api.project.Project;
 import org.netbeans.api.project.SourceGroup;
@@ -31,7 +24,6 @@ import org.netbeans.modules.maven.api.NbMavenProject;
 import org.openide.filesystems.FileChangeAdapter;
 import org.openide.filesystems.FileChangeListener;
 import org.openide.filesystems.FileEvent;
-import org.openide.filesystems.FileLock;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileRenameEvent;
 import org.openide.filesystems.FileUtil;
@@ -43,39 +35,26 @@ final class ResourcesListener extends FileChangeAdapter implements
         FileChangeListener
 {
 
-    private static final String GWT_DEBUG = "gwt-debug";// NOI18N
-
-    private static final Logger LOG = Logger.getLogger(ResourcesListener.class
-            .getName());
-
-    ResourcesListener( VaadinSupportImpl support ) {
+    ResourcesListener( VaadinSupportImpl support, File manifest ) {
         mySupport = support;
+        myMirror = new ResourceMirror(support.getProject(), manifest);
     }
 
     @Override
     public void fileDeleted( FileEvent fe ) {
         FileObject file = fe.getFile();
         if (file != null) {
+            getModuleIndex().fileDeleted(file);
             if (file.getNameExt().endsWith(XmlUtils.GWT_XML)) {
                 reinitGwtModule(file);
             }
 
-            mySupport.removeListener(file);
             if (!isTracked()) {
                 return;
             }
             File classFile = getBuildResourcePath(file);
-            if (classFile == null) {
-                return;
-            }
-            FileObject fileObject = FileUtil.toFileObject(classFile);
-            if (fileObject != null) {
-                try {
-                    fileObject.delete();
-                }
-                catch (IOException e) {
-                    LOG.log(Level.FINE, null, e);
-                }
+            if (classFile != null) {
+                myMirror.delete(classFile);
             }
         }
     }
@@ -90,20 +69,24 @@ final class ResourcesListener extends FileChangeAdapter implements
         updateResourceClassFile(fe.getFile());
         FileObject file = fe.getFile();
         if (file != null && file.getNameExt().endsWith(XmlUtils.GWT_XML)) {
+            getModuleIndex().fileCreated(file);
             reinitGwtModule(null);
         }
     }
 
     @Override
     public void fileFolderCreated( FileEvent fe ) {
-        mySupport.addListener(fe.getFile());
         updateResourceClassFile(fe.getFile());
+        if (fe.getFile() != null) {
+            getModuleIndex().fileCreated(fe.getFile());
+        }
     }
 
     @Override
     public void fileRenamed( FileRenameEvent fe ) {
         FileObject file = fe.getFile();
         if (file != null) {
+            getModuleIndex().fileRenamed(file);
             if (file.getNameExt().endsWith(XmlUtils.GWT_XML)) {
                 reinitGwtModule(file);
             }
@@ -115,71 +98,27 @@ final class ResourcesListener extends FileChangeAdapter implements
             if (classResource == null) {
                 return;
             }
-            classResource =
-                    new File(classResource, fe.getName() + '.' + fe.getExt());
-            FileObject oldClassResource =
-                    FileUtil.toFileObject(FileUtil.normalizeFile(classResource));
-            if (oldClassResource != null) {
-                try {
-                    oldClassResource.delete();
-                }
-                catch (IOException e) {
-                    LOG.log(Level.INFO, null, e);
-                }
-            }
+            String oldName = fe.getExt().isEmpty() ? fe.getName() : fe
+                    .getName() + '.' + fe.getExt();
+            myMirror.delete(FileUtil.normalizeFile(new File(classResource,
+                    oldName)));
             updateResourceClassFile(file);
         }
     }
 
     void removeOutputResources() {
-        FileObject output = getClassesFolder();
-        doRemoveResource(output);
         if (isTracked()) {
             return;
         }
-        removeEmptyFolders(output);
+        myMirror.clean();
     }
 
-    private void removeEmptyFolders( FileObject file ) {
-        if (isTracked() || file == null) {
-            return;
-        }
-        if (file.isFolder()) {
-            FileObject[] children = file.getChildren();
-            if (children.length == 0) {
-                try {
-                    file.delete();
-                }
-                catch (IOException e) {
-                    LOG.log(Level.INFO, null, e);
-                }
-            }
-            else {
-                for (FileObject child : children) {
-                    removeEmptyFolders(child);
-                }
-            }
-        }
+    int getMirroredCount() {
+        return myMirror.size();
     }
 
-    private void doRemoveResource( FileObject file ) {
-        if (isTracked() || file == null) {
-            return;
-        }
-        if (!file.isFolder() && file.getAttribute(GWT_DEBUG) != null) {
-            try {
-                file.delete();
-            }
-            catch (IOException e) {
-                LOG.log(Level.INFO, null, e);
-            }
-        }
-        else if (file.isFolder()) {
-            FileObject[] children = file.getChildren();
-            for (FileObject child : children) {
-                doRemoveResource(child);
-            }
-        }
+    void storeManifest() {
+        myMirror.store();
     }
 
     private boolean isTracked() {
@@ -193,116 +132,37 @@ final class ResourcesListener extends FileChangeAdapter implements
     }
 
     private void updateResourceClassFile( FileObject fileObject ) {
-        if (!isTracked()) {
+        if (!isTracked() || fileObject == null) {
             return;
         }
-        if (fileObject != null) {
-            if (fileObject.isFolder()) {
-                try {
-                    File folder = getBuildResourcePath(fileObject);
-                    if (folder != null) {
-                        FileUtil.createFolder(folder);
-                    }
-                }
-                catch (IOException e) {
-                    LOG.log(Level.INFO, null, e);
-                }
-                FileObject[] children = fileObject.getChildren();
-                for (FileObject child : children) {
-                    updateResourceClassFile(child);
-                }
-            }
-            else {
-                FileObject resource =
-                        copy(fileObject, getBuildResourcePath(fileObject));
-                if (resource != null) {
-                    try {
-                        resource.setAttribute(GWT_DEBUG, Boolean.TRUE);
-                    }
-                    catch (IOException e) {
-                        LOG.log(Level.INFO, null, e);
-                    }
-                }
-            }
+        File source = FileUtil.toFile(fileObject);
+        File target = getBuildResourcePath(fileObject);
+        if (source == null || target == null) {
+            return;
         }
-    }
-
-    private void reinitGwtModule( final FileObject file ) {
-        VaadinSupportImpl.REQUEST_PROCESSOR.execute(new Runnable() {
-
-            @Override
-            public void run() {
-                try {
-                    mySupport.invoke(new Task<CompilationController>() {
-
-                        @Override
-                        public void run( CompilationController arg0 )
-                                throws Exception
-                        {
-                            if (file == null
-                                    || file.equals(mySupport.getModel()
-                                            .getGwtXml(false)))
-                            {
-                                mySupport.getModel().initGwtXml();
-                            }
-                        }
-                    }, false);
-                }
-                catch (IOException e) {
-                    LOG.log(Level.FINE, null, e);
-                }
+        myMirror.copy(source, target);
+        if (fileObject.isFolder()) {
+            for (FileObject child : fileObject.getChildren()) {
+                updateResourceClassFile(child);
             }
-        });
+        }
     }
 
-    private FileObject copy( FileObject fileObject, File file ) {
-        if (file == null) {
-            return null;
-        }
-        FileObject dest = FileUtil.toFileObject(file);
-        OutputStream outputStream = null;
-        InputStream inputStream = null;
-        FileLock lock = null;
-        try {
-            if (dest == null) {
-                File parent = file.getParentFile();
-                FileObject parentFolder = FileUtil.createFolder(parent);
-                return FileUtil.copyFile(fileObject, parentFolder,
-                        fileObject.getName());
-            }
-            else {
-                lock = dest.lock();
-                outputStream = dest.getOutputStream(lock);
-                inputStream = fileObject.getInputStream();
-                FileUtil.copy(inputStream, outputStream);
-                return dest;
-            }
-        }
-        catch (IOException e) {
-            LOG.log(Level.INFO, null, e);
+    private void reinitGwtModule( FileObject file ) {
+        WidgetsetProjectCache.getInstance().invalidate(mySupport.getProject());
+        if (mySupport.isLowMemory()) {
+            // GWT module is re-synced on leaving low memory mode
+            return;
         }
-        finally {
-            if (lock != null) {
-                lock.releaseLock();
-            }
-            try {
-                if (inputStream != null) {
-                    inputStream.close();
-                }
-            }
-            catch (IOException e) {
-                LOG.log(Level.FINE, null, e);
-            }
-            try {
-                if (outputStream != null) {
-                    outputStream.close();
-                }
-            }
-            catch (IOException e) {
-                LOG.log(Level.FINE, null, e);
-            }
+        VaadinModelImpl model = mySupport.peekModel();
+        if (file == null || file.equals(model.getGwtXml(false))) {
+            model.scheduleGwtSync();
         }
-        return null;
+    }
+
+    private GwtModuleIndex getModuleIndex() {
+        // file events don't count as the project access
+        return mySupport.peekModel().getModuleIndex();
     }
 
     private FileObject getClassesFolder() {
@@ -368,4 +228,6 @@ final class ResourcesListener extends FileChangeAdapter implements
 
     private final VaadinSupportImpl mySupport;
 
+    private final ResourceMirror myMirror;
+
 }
\ No newline at end of file
@@ -0,0 +1,555 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+
+import org.netbeans.api.java.classpath.ClassPath;
+import org.netbeans.api.java.source.ClassIndex.NameKind;
+import org.netbeans.api.java.source.ClassIndex.SearchScope;
+import org.netbeans.api.java.source.ClasspathInfo.PathKind;
+import org.netbeans.api.java.source.CompilationInfo;
+import org.netbeans.api.java.source.ElementHandle;
+import org.netbeans.api.java.source.SourceUtils;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.vaadin.netbeans.utils.JavaUtils;
+
+/**
+ * Keeps supertype to source subtypes graph for the project.
+ *
+ * Each source type is stored along with all its supertypes (not only direct
+ * ones) so the descendants query is a single lookup. The graph is built once,
+ * persisted in the cache directory and updated incrementally from class index
+ * events. The persisted graph is used only with the same boot and compile
+ * classpath: supertypes closures depend on binary types as well.
+ *
+ * @author denis
+ */
+class SubtypeGraphStrategy implements AdaptiveStrategy.CachingStrategy {
+
+    private static final int VERSION = 2;
+
+    private static final String OBJECT = Object.class.getName();
+
+    private static final Logger LOG = Logger
+            .getLogger(SubtypeGraphStrategy.class.getName());
+
+    SubtypeGraphStrategy( File cacheFile ) {
+        myCacheFile = cacheFile;
+        myTypes = new HashMap<>();
+        mySubtypes = new HashMap<>();
+        myLock = new ReentrantReadWriteLock();
+    }
+
+    @Override
+    public Collection<TypeElement> getSourceSubclasses( TypeElement type,
+            CompilationInfo info ) throws InterruptedException
+    {
+        return collectDescendants(type, info, ElementKind.CLASS);
+    }
+
+    @Override
+    public Collection<TypeElement> getSourceSubInterfaces( TypeElement type,
+            CompilationInfo info ) throws InterruptedException
+    {
+        return collectDescendants(type, info, ElementKind.INTERFACE);
+    }
+
+    @Override
+    public void warmUp( CompilationInfo info ) throws InterruptedException {
+        initGraph(info);
+    }
+
+    @Override
+    public boolean isWarm() {
+        myLock.readLock().lock();
+        try {
+            return isInitialized;
+        }
+        finally {
+            myLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isMemoized( TypeElement type ) {
+        return false;
+    }
+
+    /**
+     * Updates graph with added or changed types.
+     */
+    void update( Iterable<? extends ElementHandle<TypeElement>> handles,
+            CompilationInfo info )
+    {
+        myLock.writeLock().lock();
+        try {
+            if (!isInitialized) {
+                return;
+            }
+            for (ElementHandle<TypeElement> handle : handles) {
+                update(handle, info);
+            }
+            isDirty = true;
+        }
+        finally {
+            myLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes types from the graph. Their descendants are recalculated since
+     * the removed types were a part of their supertypes closures.
+     */
+    void remove( Iterable<? extends ElementHandle<TypeElement>> handles,
+            CompilationInfo info )
+    {
+        myLock.writeLock().lock();
+        try {
+            if (!isInitialized) {
+                return;
+            }
+            Set<String> descendants = new HashSet<>();
+            Set<String> removed = new HashSet<>();
+            for (ElementHandle<TypeElement> handle : handles) {
+                String name = handle.getBinaryName();
+                Set<String> subtypes = mySubtypes.get(name);
+                if (subtypes != null) {
+                    descendants.addAll(subtypes);
+                }
+                removeType(name);
+                removed.add(name);
+            }
+            descendants.removeAll(removed);
+            updateDescendants(descendants, info);
+            for (String name : removed) {
+                mySubtypes.remove(name);
+            }
+            isDirty = true;
+        }
+        finally {
+            myLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the graph as requiring synchronization with the class index. The
+     * collected data is kept: only new and modified types are resolved on the
+     * next query.
+     */
+    void invalidate() {
+        myLock.writeLock().lock();
+        try {
+            isInitialized = false;
+        }
+        finally {
+            myLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the graph into the cache file and drops it from memory. The graph
+     * is re-read from the cache file on the next query.
+     */
+    void release() {
+        store();
+        myLock.writeLock().lock();
+        try {
+            isInitialized = false;
+            myTypes.clear();
+            mySubtypes.clear();
+            myTimestamp = 0;
+        }
+        finally {
+            myLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of types kept in the graph
+     */
+    int size() {
+        myLock.readLock().lock();
+        try {
+            return myTypes.size();
+        }
+        finally {
+            myLock.readLock().unlock();
+        }
+    }
+
+    void store() {
+        myLock.writeLock().lock();
+        try {
+            if (!isInitialized || !isDirty) {
+                return;
+            }
+            File parent = myCacheFile.getParentFile();
+            if (!parent.exists() && !parent.mkdirs()) {
+                LOG.log(Level.WARNING, "Unable to create cache directory {0}", // NOI18N
+                        parent);
+                return;
+            }
+            DataOutputStream stream =
+                    new DataOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(myCacheFile)));
+            try {
+                stream.writeInt(VERSION);
+                stream.writeUTF(myFingerprint);
+                stream.writeLong(myTimestamp);
+                stream.writeInt(myTypes.size());
+                for (Entry<String, TypeNode> entry : myTypes.entrySet()) {
+                    TypeNode node = entry.getValue();
+                    stream.writeUTF(entry.getKey());
+                    stream.writeUTF(node.getKind().name());
+                    stream.writeInt(node.getSupertypes().size());
+                    for (String supertype : node.getSupertypes()) {
+                        stream.writeUTF(supertype);
+                    }
+                }
+            }
+            finally {
+                stream.close();
+            }
+            isDirty = false;
+        }
+        catch (IOException e) {
+            LOG.log(Level.INFO, null, e);
+        }
+        finally {
+            myLock.writeLock().unlock();
+        }
+    }
+
+    private Collection<TypeElement> collectDescendants( TypeElement type,
+            CompilationInfo info, ElementKind kind )
+            throws InterruptedException
+    {
+        initGraph(info);
+        String name = ElementHandle.create(type).getBinaryName();
+        List<String> names;
+        myLock.readLock().lock();
+        try {
+            Set<String> subtypes = mySubtypes.get(name);
+            if (subtypes == null) {
+                return new ArrayList<>(0);
+            }
+            names = new ArrayList<>(subtypes.size());
+            for (String subtype : subtypes) {
+                TypeNode node = myTypes.get(subtype);
+                if (node != null && kind.equals(node.getKind())) {
+                    names.add(subtype);
+                }
+            }
+        }
+        finally {
+            myLock.readLock().unlock();
+        }
+        List<TypeElement> result = new ArrayList<>(names.size());
+        for (String subtype : names) {
+            TypeElement element =
+                    ElementHandle.createTypeElementHandle(kind, subtype)
+                            .resolve(info);
+            if (element != null) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    void initGraph( CompilationInfo info ) throws InterruptedException
+    {
+        myLock.readLock().lock();
+        try {
+            if (isInitialized) {
+                return;
+            }
+        }
+        finally {
+            myLock.readLock().unlock();
+        }
+        myLock.writeLock().lock();
+        try {
+            if (isInitialized) {
+                return;
+            }
+            String fingerprint = getFingerprint(info);
+            if (myTimestamp != 0 && !fingerprint.equals(myFingerprint)) {
+                // binary supertypes could be changed, rebuild from scratch
+                myTypes.clear();
+                mySubtypes.clear();
+                myTimestamp = 0;
+            }
+            myFingerprint = fingerprint;
+            if (myTimestamp == 0) {
+                load();
+            }
+            long timestamp = System.currentTimeMillis();
+            Set<ElementHandle<TypeElement>> handles =
+                    info.getClasspathInfo()
+                            .getClassIndex()
+                            .getDeclaredTypes("", NameKind.PREFIX,
+                                    EnumSet.of(SearchScope.SOURCE));
+            if (handles == null) {
+                throw new InterruptedException(
+                        "ClassIndex.getDeclaredTypes() was interrupted"); // NOI18N
+            }
+            Set<String> names = new HashSet<>();
+            for (ElementHandle<TypeElement> handle : handles) {
+                names.add(handle.getBinaryName());
+                if (isModified(handle, info)) {
+                    update(handle, info);
+                }
+            }
+            for (String name : new ArrayList<>(myTypes.keySet())) {
+                if (!names.contains(name)) {
+                    removeType(name);
+                }
+            }
+            myTimestamp = timestamp;
+            isInitialized = true;
+            isDirty = true;
+        }
+        finally {
+            myLock.writeLock().unlock();
+        }
+    }
+
+    private boolean isModified( ElementHandle<TypeElement> handle,
+            CompilationInfo info )
+    {
+        if (!myTypes.containsKey(handle.getBinaryName())) {
+            return true;
+        }
+        FileObject file = SourceUtils.getFile(handle, info.getClasspathInfo());
+        return file == null || file.lastModified().getTime() >= myTimestamp;
+    }
+
+    private void update( ElementHandle<TypeElement> handle,
+            CompilationInfo info )
+    {
+        String name = handle.getBinaryName();
+        Set<String> descendants = mySubtypes.get(name);
+        addType(name, handle.resolve(info), info);
+        if (descendants != null) {
+            /*
+             * Supertypes of the type could be changed so its descendants have
+             * to be recalculated as well
+             */
+            updateDescendants(new ArrayList<>(descendants), info);
+        }
+    }
+
+    private void updateDescendants( Collection<String> descendants,
+            CompilationInfo info )
+    {
+        for (String descendant : descendants) {
+            TypeNode node = myTypes.get(descendant);
+            if (node != null) {
+                addType(descendant, ElementHandle.createTypeElementHandle(
+                        node.getKind(), descendant).resolve(info), info);
+            }
+        }
+    }
+
+    private void addType( String name, TypeElement type, CompilationInfo info )
+    {
+        removeType(name);
+        if (type == null || !JavaUtils.TYPE_KINDS.contains(type.getKind())) {
+            return;
+        }
+        Set<String> supertypes = new HashSet<>();
+        for (TypeMirror mirror : JavaUtils.getSupertypes(type.asType(), info))
+        {
+            Element element = info.getTypes().asElement(mirror);
+            if (element instanceof TypeElement) {
+                String supertype =
+                        ElementHandle.create((TypeElement) element)
+                                .getBinaryName();
+                if (!OBJECT.equals(supertype)) {
+                    supertypes.add(supertype);
+                }
+            }
+        }
+        addNode(name, new TypeNode(type.getKind(), supertypes));
+    }
+
+    private void addNode( String name, TypeNode node ) {
+        myTypes.put(name, node);
+        for (String supertype : node.getSupertypes()) {
+            Set<String> subtypes = mySubtypes.get(supertype);
+            if (subtypes == null) {
+                subtypes = new HashSet<>();
+                mySubtypes.put(supertype, subtypes);
+            }
+            subtypes.add(name);
+        }
+    }
+
+    private void removeType( String name ) {
+        TypeNode node = myTypes.remove(name);
+        if (node == null) {
+            return;
+        }
+        for (String supertype : node.getSupertypes()) {
+            Set<String> subtypes = mySubtypes.get(supertype);
+            if (subtypes != null) {
+                subtypes.remove(name);
+                if (subtypes.isEmpty()) {
+                    mySubtypes.remove(supertype);
+                }
+            }
+        }
+    }
+
+    private void load() {
+        if (!myCacheFile.exists()) {
+            return;
+        }
+        try {
+            DataInputStream stream =
+                    new DataInputStream(new BufferedInputStream(
+                            new FileInputStream(myCacheFile)));
+            try {
+                if (stream.readInt() != VERSION
+                        || !myFingerprint.equals(stream.readUTF()))
+                {
+                    return;
+                }
+                long timestamp = stream.readLong();
+                int count = stream.readInt();
+                for (int i = 0; i < count; i++) {
+                    String name = stream.readUTF();
+                    ElementKind kind = ElementKind.valueOf(stream.readUTF());
+                    int size = stream.readInt();
+                    Set<String> supertypes = new HashSet<>(size);
+                    for (int j = 0; j < size; j++) {
+                        supertypes.add(stream.readUTF());
+                    }
+                    addNode(name, new TypeNode(kind, supertypes));
+                }
+                myTimestamp = timestamp;
+            }
+            finally {
+                stream.close();
+            }
+        }
+        catch (IOException | IllegalArgumentException e) {
+            LOG.log(Level.INFO, "Unable to read subtypes cache " + // NOI18N
+                    myCacheFile, e);
+            myTypes.clear();
+            mySubtypes.clear();
+            myTimestamp = 0;
+        }
+    }
+
+    /**
+     * @return digest of the boot and compile classpath entries, archives are
+     *         identified by their path, size and modification time
+     */
+    private static String getFingerprint( CompilationInfo info ) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1"); // NOI18N
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (PathKind kind : EnumSet.of(PathKind.BOOT, PathKind.COMPILE)) {
+            for (ClassPath.Entry entry : info.getClasspathInfo()
+                    .getClassPath(kind).entries())
+            {
+                URL url = entry.getURL();
+                StringBuilder builder = new StringBuilder(url.toString());
+                File file = FileUtil.archiveOrDirForURL(url);
+                if (file != null && file.isFile()) {
+                    builder.append(':').append(file.length()).append(':')
+                            .append(file.lastModified());
+                }
+                builder.append('\n');
+                digest.update(builder.toString().getBytes(
+                        StandardCharsets.UTF_8));
+            }
+        }
+        return new BigInteger(1, digest.digest()).toString(16);
+    }
+
+    private static final class TypeNode {
+
+        TypeNode( ElementKind kind, Set<String> supertypes ) {
+            myKind = kind;
+            mySupertypes = supertypes;
+        }
+
+        ElementKind getKind() {
+            return myKind;
+        }
+
+        Set<String> getSupertypes() {
+            return mySupertypes;
+        }
+
+        private final ElementKind myKind;
+
+        private final Set<String> mySupertypes;
+    }
+
+    private final File myCacheFile;
+
+    private final Map<String, TypeNode> myTypes;
+
+    private final Map<String, Set<String>> mySubtypes;
+
+    private final ReentrantReadWriteLock myLock;
+
+    private boolean isInitialized;
+
+    private boolean isDirty;
+
+    private long myTimestamp;
+
+    private String myFingerprint;
+}
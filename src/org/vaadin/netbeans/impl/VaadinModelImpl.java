@@ -19,10 +19,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,6 +32,7 @@ import javax.lang.model.element.TypeElement;
 import org.netbeans.api.java.source.ElementHandle;
 import org.netbeans.api.project.Project;
 import org.netbeans.modules.j2ee.dd.api.common.InitParam;
+import org.netbeans.modules.j2ee.dd.api.web.DDProvider;
 import org.netbeans.modules.j2ee.dd.api.web.Servlet;
 import org.netbeans.modules.j2ee.dd.api.web.WebApp;
 import org.netbeans.modules.maven.api.NbMavenProject;
@@ -38,6 +40,7 @@ import org.netbeans.modules.xml.retriever.catalog.Utilities;
 import org.netbeans.modules.xml.xam.ModelSource;
 import org.netbeans.modules.xml.xam.locator.CatalogModelException;
 import org.openide.filesystems.FileObject;
+import org.openide.util.RequestProcessor;
 import org.vaadin.netbeans.model.ServletConfiguration;
 import org.vaadin.netbeans.model.VaadinModel;
 import org.vaadin.netbeans.model.gwt.GwtModel;
@@ -45,6 +48,8 @@ import org.vaadin.netbeans.model.gwt.GwtModelFactory;
 import org.vaadin.netbeans.model.gwt.Module;
 import org.vaadin.netbeans.model.gwt.Source;
 import org.vaadin.netbeans.utils.JavaUtils;
+import org.vaadin.netbeans.utils.Scheduler;
+import org.vaadin.netbeans.utils.Scheduler.Lane;
 import org.vaadin.netbeans.utils.XmlUtils;
 
 /**
@@ -54,12 +59,24 @@ class VaadinModelImpl implements VaadinModel {
 
     private static final String CLIENT = "client"; // NOI18N
 
+    private static final int GWT_SYNC_DELAY = 300;
+
     private static final Logger LOG = Logger
             .getLogger(VaadinModelImpl.class.getName());
 
-    VaadinModelImpl(Project project) {
-        myConfigs = new HashMap<>();
+    VaadinModelImpl(Project project, PomSnapshot.Cache pomSnapshots) {
+        myState = new AtomicReference<>(State.EMPTY);
         myProject = project;
+        myPomSnapshots = pomSnapshots;
+        myModuleIndex = new GwtModuleIndex(project);
+        myGwtSyncTask = Scheduler.getInstance().create(Lane.PROJECT, project,
+                new Runnable() {
+
+                    @Override
+                    public void run() {
+                        initGwtXml();
+                    }
+                });
     }
 
     @Override
@@ -67,26 +84,16 @@ class VaadinModelImpl implements VaadinModel {
         if (!isWeb()) {
             return Collections.emptyList();
         }
-        Collection<ServletConfiguration> configs = myConfigs.values();
-        int size = configs.size();
-        Collection<ServletConfiguration> webXmlConfigs = getWebXmlConfigs();
-        if (webXmlConfigs != null) {
-            size += webXmlConfigs.size();
-        }
-        List<ServletConfiguration> result = new ArrayList<>(size);
-        if (webXmlConfigs != null) {
-            result.addAll(webXmlConfigs);
-        }
-        result.addAll(configs);
-        return result;
+        return syncWebXml().getServletConfigurations();
     }
 
     @Override
     public List<String> getSourcePaths() {
-        if (myGwtModel == null) {
-            return null;
+        GwtModel gwtModel = getGwtModel();
+        if (gwtModel == null) {
+            return Collections.emptyList();
         } else {
-            Module module = myGwtModel.getModule();
+            Module module = gwtModel.getModule();
             if (module == null) {
                 return Collections.singletonList(CLIENT);
             }
@@ -105,7 +112,11 @@ class VaadinModelImpl implements VaadinModel {
 
     @Override
     public GwtModel getGwtModel() {
-        return myGwtModel;
+        State state = myState.get();
+        if (state.getGwtModel() == null && state.getGwtXml() != null) {
+            return loadGwtModel();
+        }
+        return state.getGwtModel();
     }
 
     @Override
@@ -113,49 +124,128 @@ class VaadinModelImpl implements VaadinModel {
         return getGwtXml(true);
     }
 
+    @Override
+    public List<FileObject> getGwtModules() {
+        return myModuleIndex.getModules();
+    }
+
+    @Override
+    public long getGwtModelVersion() {
+        return myState.get().getGwtVersion();
+    }
+
     private boolean isWeb() {
         NbMavenProject mvnProject = myProject.getLookup()
                 .lookup(NbMavenProject.class);
         return NbMavenProject.TYPE_WAR.equals(mvnProject.getPackagingType());
     }
 
-    void initGwtXml() {
+    /**
+     * Resolves GWT module file and re-syncs GWT model if the file is changed.
+     * Should not be called inside the java parsing task: the GWT model sync
+     * is an XML model operation which is not related to java infrastructure.
+     */
+    synchronized void initGwtXml() {
         FileObject gwtXml = findGwtXml();
-        if (gwtXml == null) {
-            myGwtModel = null;
-        } else if (!gwtXml.equals(myGwtXml)) {
-            myGwtModel = GwtModelFactory.getInstance()
-                    .getModel(getModelSource(gwtXml));
-            try {
-                myGwtModel.sync();
-            } catch (IOException e) {
-                LOG.log(Level.INFO, null, e);
+        FileObject current = myState.get().getGwtXml();
+        if (gwtXml == null ? current == null : gwtXml.equals(current)) {
+            return;
+        }
+        WidgetsetProjectCache.getInstance().invalidate(myProject);
+        if (gwtXml == null || isGwtModelReleased) {
+            setGwt(gwtXml, null);
+        } else {
+            setGwt(gwtXml, createGwtModel(gwtXml));
+        }
+    }
+
+    /**
+     * Drops GWT model of the inactive project. The model is re-created on the
+     * first access.
+     */
+    synchronized void releaseGwtModel() {
+        isGwtModelReleased = true;
+        while (true) {
+            State state = myState.get();
+            if (state.getGwtModel() == null || myState.compareAndSet(state,
+                    state.withoutGwtModel())) {
+                return;
             }
         }
-        myGwtXml = gwtXml;
+    }
+
+    boolean isGwtModelLoaded() {
+        return myState.get().getGwtModel() != null;
+    }
+
+    int getServletConfigurationsCount() {
+        return myState.get().getServletConfigurations().size();
+    }
+
+    /**
+     * Schedules GWT model re-sync. Subsequent requests within
+     * {@link #GWT_SYNC_DELAY} are coalesced into one re-sync.
+     */
+    void scheduleGwtSync() {
+        myGwtSyncTask.schedule(GWT_SYNC_DELAY);
     }
 
     void add(ElementHandle<TypeElement> handle, ServletConfigurationImpl impl) {
-        if (myConfigs.get(handle) != null) {
-            return;
+        while (true) {
+            State state = myState.get();
+            if (state.getConfigs().get(handle) != null) {
+                return;
+            }
+            Map<ElementHandle<TypeElement>, ServletConfiguration> configs = new LinkedHashMap<>(
+                    state.getConfigs());
+            configs.put(handle, impl);
+            if (myState.compareAndSet(state, state.withConfigs(configs))) {
+                break;
+            }
         }
-        myConfigs.put(handle, impl);
-        initGwtXml();
+        scheduleGwtSync();
     }
 
     void cleanup(boolean reinit) {
-        myConfigs.clear();
+        clearConfigurations();
         if (reinit) {
-            initGwtXml();
+            scheduleGwtSync();
         } else {
-            myGwtXml = null;
-            myGwtModel = null;
+            myGwtSyncTask.cancel();
+            synchronized (this) {
+                State state = myState.get();
+                if (state.getGwtXml() != null || state.getGwtModel() != null) {
+                    setGwt(null, null);
+                }
+            }
+        }
+    }
+
+    void clearConfigurations() {
+        while (true) {
+            State state = myState.get();
+            if (state.getConfigs().isEmpty() || myState.compareAndSet(state,
+                    state.withConfigs(Collections
+                            .<ElementHandle<TypeElement>, ServletConfiguration> emptyMap()))) {
+                return;
+            }
         }
     }
 
     void remove(ElementHandle<TypeElement> handle) {
-        myConfigs.remove(handle);
-        initGwtXml();
+        while (true) {
+            State state = myState.get();
+            if (state.getConfigs().get(handle) == null) {
+                return;
+            }
+            Map<ElementHandle<TypeElement>, ServletConfiguration> configs = new LinkedHashMap<>(
+                    state.getConfigs());
+            configs.remove(handle);
+            if (myState.compareAndSet(state, state.withConfigs(configs))) {
+                break;
+            }
+        }
+        scheduleGwtSync();
     }
 
     FileObject findGwtXml() {
@@ -171,9 +261,11 @@ class VaadinModelImpl implements VaadinModel {
                     return webWidgetsetFiles.iterator().next();
                 }
             } else {
+                PomSnapshot snapshot = myPomSnapshots
+                        .get(VaadinSupportImpl.getPom(myProject));
                 Set<FileObject> widgetsets = JavaUtils.getWidgetsetFiles(
-                        VaadinSupportImpl.getPomWidgetsets(
-                                VaadinSupportImpl.getPom(myProject)),
+                        snapshot == null ? Collections.<String> emptyList()
+                                : snapshot.getWidgetsets(),
                         myProject);
                 if (widgetsets.isEmpty()) {
                     LOG.log(Level.INFO,
@@ -190,7 +282,7 @@ class VaadinModelImpl implements VaadinModel {
                             + "proceed with recursive GWT Modules ",
                     e);// NOI18N
         }
-        FileObject fileObject = XmlUtils.findGwtXml(myProject);
+        FileObject fileObject = myModuleIndex.getFirst();
         if (fileObject != null && fileObject.isValid()) {
             return fileObject;
         } else {
@@ -199,10 +291,51 @@ class VaadinModelImpl implements VaadinModel {
     }
 
     public FileObject getGwtXml(boolean init) {
-        if (init && myGwtXml == null) {
-            return XmlUtils.findGwtXml(myProject);
+        FileObject gwtXml = myState.get().getGwtXml();
+        if (init && gwtXml == null) {
+            return myModuleIndex.getFirst();
+        }
+        return gwtXml;
+    }
+
+    GwtModuleIndex getModuleIndex() {
+        return myModuleIndex;
+    }
+
+    /**
+     * Publishes GWT module file and model. Callers are serialized via the
+     * model monitor, servlet configurations may be changed concurrently.
+     */
+    private synchronized GwtModel loadGwtModel() {
+        isGwtModelReleased = false;
+        State state = myState.get();
+        if (state.getGwtModel() != null || state.getGwtXml() == null) {
+            return state.getGwtModel();
+        }
+        GwtModel gwtModel = createGwtModel(state.getGwtXml());
+        setGwt(state.getGwtXml(), gwtModel);
+        return gwtModel;
+    }
+
+    private GwtModel createGwtModel(FileObject gwtXml) {
+        GwtModel gwtModel = GwtModelFactory.getInstance()
+                .getModel(getModelSource(gwtXml));
+        try {
+            gwtModel.sync();
+        } catch (IOException e) {
+            LOG.log(Level.INFO, null, e);
+        }
+        return gwtModel;
+    }
+
+    private void setGwt(FileObject gwtXml, GwtModel gwtModel) {
+        while (true) {
+            State state = myState.get();
+            if (myState.compareAndSet(state,
+                    state.withGwt(gwtXml, gwtModel))) {
+                return;
+            }
         }
-        return myGwtXml;
     }
 
     private ModelSource getModelSource(FileObject fileObject) {
@@ -214,15 +347,46 @@ class VaadinModelImpl implements VaadinModel {
         return null;
     }
 
-    private List<ServletConfiguration> getWebXmlConfigs() {
+    /**
+     * Re-reads widgetset init parameters from web.xml only if the file has
+     * been changed since the last read.
+     *
+     * @return the state which is up to date with web.xml
+     */
+    private State syncWebXml() {
+        State state = myState.get();
+        FileObject webXml = null;
+        try {
+            webXml = XmlUtils.getWebXml(myProject);
+        } catch (IOException e) {
+            LOG.log(Level.INFO, null, e);
+        }
+        long stamp = webXml == null ? 0 : webXml.lastModified().getTime();
+        if (state.getWebXml().isUpToDate(webXml, stamp)) {
+            return state;
+        }
+        WebXml parsed = new WebXml(webXml, stamp, getWebXmlConfigs(webXml));
+        while (true) {
+            state = myState.get();
+            State newState = state.withWebXml(parsed);
+            if (myState.compareAndSet(state, newState)) {
+                return newState;
+            }
+        }
+    }
+
+    private List<ServletConfiguration> getWebXmlConfigs(FileObject webXml) {
+        if (webXml == null) {
+            return Collections.emptyList();
+        }
         WebApp webApp = null;
         try {
-            webApp = XmlUtils.getWebApp(myProject);
+            webApp = DDProvider.getDefault().getDDRoot(webXml);
         } catch (IOException e) {
             LOG.log(Level.INFO, null, e);
         }
         if (webApp == null) {
-            return null;
+            return Collections.emptyList();
         }
         Servlet[] servlets = webApp.getServlet();
         List<ServletConfiguration> result = new ArrayList<>(servlets.length);
@@ -253,12 +417,136 @@ class VaadinModelImpl implements VaadinModel {
         return result;
     }
 
-    private final Map<ElementHandle<TypeElement>, ServletConfiguration> myConfigs;
+    /**
+     * Widgetset configurations parsed from web.xml along with the file
+     * modification stamp they correspond to.
+     */
+    private static final class WebXml {
+
+        static final WebXml UNKNOWN = new WebXml(null, -1,
+                Collections.<ServletConfiguration> emptyList());
+
+        WebXml(FileObject file, long stamp,
+                List<ServletConfiguration> configs) {
+            myFile = file;
+            myStamp = stamp;
+            myConfigs = configs;
+        }
+
+        boolean isUpToDate(FileObject file, long stamp) {
+            return stamp == myStamp
+                    && (file == null ? myFile == null : file.equals(myFile));
+        }
+
+        List<ServletConfiguration> getConfigs() {
+            return myConfigs;
+        }
+
+        private final FileObject myFile;
+
+        private final long myStamp;
+
+        private final List<ServletConfiguration> myConfigs;
+    }
+
+    /**
+     * Immutable model state. Any change creates a new state which is
+     * published atomically so readers don't need any lock.
+     */
+    private static final class State {
+
+        static final State EMPTY = new State(
+                Collections.<ElementHandle<TypeElement>, ServletConfiguration> emptyMap(),
+                WebXml.UNKNOWN, null, null, 0);
+
+        private State(
+                Map<ElementHandle<TypeElement>, ServletConfiguration> configs,
+                WebXml webXml, FileObject gwtXml, GwtModel gwtModel,
+                long gwtVersion) {
+            myConfigs = configs;
+            myWebXml = webXml;
+            myGwtXml = gwtXml;
+            myGwtModel = gwtModel;
+            myGwtVersion = gwtVersion;
+            List<ServletConfiguration> all = new ArrayList<>(
+                    webXml.getConfigs().size() + configs.size());
+            all.addAll(webXml.getConfigs());
+            all.addAll(configs.values());
+            myServletConfigs = Collections.unmodifiableList(all);
+        }
 
-    private FileObject myGwtXml;
+        State withConfigs(
+                Map<ElementHandle<TypeElement>, ServletConfiguration> configs) {
+            return new State(Collections.unmodifiableMap(configs), myWebXml,
+                    myGwtXml, myGwtModel, myGwtVersion);
+        }
+
+        State withWebXml(WebXml webXml) {
+            return new State(myConfigs, webXml, myGwtXml, myGwtModel,
+                    myGwtVersion);
+        }
+
+        State withGwt(FileObject gwtXml, GwtModel gwtModel) {
+            return new State(myConfigs, myWebXml, gwtXml, gwtModel,
+                    myGwtVersion + 1);
+        }
+
+        State withoutGwtModel() {
+            return new State(myConfigs, myWebXml, myGwtXml, null,
+                    myGwtVersion + 1);
+        }
+
+        Map<ElementHandle<TypeElement>, ServletConfiguration> getConfigs() {
+            return myConfigs;
+        }
+
+        WebXml getWebXml() {
+            return myWebXml;
+        }
+
+        /**
+         * @return web.xml configurations followed by annotated servlets
+         *         configurations
+         */
+        List<ServletConfiguration> getServletConfigurations() {
+            return myServletConfigs;
+        }
+
+        FileObject getGwtXml() {
+            return myGwtXml;
+        }
+
+        GwtModel getGwtModel() {
+            return myGwtModel;
+        }
+
+        long getGwtVersion() {
+            return myGwtVersion;
+        }
+
+        private final Map<ElementHandle<TypeElement>, ServletConfiguration> myConfigs;
+
+        private final WebXml myWebXml;
+
+        private final List<ServletConfiguration> myServletConfigs;
+
+        private final FileObject myGwtXml;
+
+        private final GwtModel myGwtModel;
+
+        private final long myGwtVersion;
+    }
+
+    private final AtomicReference<State> myState;
 
     private final Project myProject;
 
-    private GwtModel myGwtModel;
+    private final PomSnapshot.Cache myPomSnapshots;
+
+    private final GwtModuleIndex myModuleIndex;
+
+    private final RequestProcessor.Task myGwtSyncTask;
+
+    private volatile boolean isGwtModelReleased;
 
 }
@@ -18,27 +18,36 @@ package org.vaadin.netbeans.impl;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
-import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -46,10 +55,13 @@ import javax.swing.event.ChangeListener;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.project.MavenProject;
 import org.netbeans.api.java.classpath.ClassPath;
+import org.netbeans.api.java.source.ClassIndex.NameKind;
+import org.netbeans.api.java.source.ClassIndex.SearchScope;
 import org.netbeans.api.java.source.ClassIndexListener;
 import org.netbeans.api.java.source.ClasspathInfo;
 import org.netbeans.api.java.source.ClasspathInfo.PathKind;
 import org.netbeans.api.java.source.CompilationController;
+import org.netbeans.api.java.source.CompilationInfo;
 import org.netbeans.api.java.source.ElementHandle;
 import org.netbeans.api.java.source.JavaSource;
 import org.netbeans.api.java.source.JavaSource.Phase;
@@ -60,6 +72,7 @@ import org.netbeans.api.project.FileOwnerQuery;
 import org.netbeans.api.project.Project;
 import org.netbeans.api.project.ProjectUtils;
 import org.netbeans.api.project.SourceGroup;
+import org.netbeans.api.queries.VisibilityQuery;
 import org.netbeans.modules.maven.api.NbMavenProject;
 import org.netbeans.modules.maven.model.Utilities;
 import org.netbeans.modules.maven.model.pom.POMComponent;
@@ -71,15 +84,22 @@ import org.netbeans.spi.project.ui.ProjectOpenedHook;
 import org.openide.execution.ExecutorTask;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
+import org.openide.modules.Places;
 import org.openide.util.RequestProcessor;
 import org.openide.util.TaskListener;
 import org.vaadin.netbeans.VaadinSupport;
+import org.vaadin.netbeans.impl.InitPipeline.Stage;
+import org.vaadin.netbeans.impl.InitPipeline.StageResult;
+import org.vaadin.netbeans.impl.InitPipeline.StageTask;
 import org.vaadin.netbeans.maven.editor.completion.AddOnProvider;
 import org.vaadin.netbeans.maven.project.VaadinVersions;
 import org.vaadin.netbeans.model.ModelOperation;
 import org.vaadin.netbeans.model.SourceDescendantsStrategy;
+import org.vaadin.netbeans.retriever.AbstractRetriever;
 import org.vaadin.netbeans.utils.JavaUtils;
 import org.vaadin.netbeans.utils.POMUtils;
+import org.vaadin.netbeans.utils.Scheduler;
+import org.vaadin.netbeans.utils.Scheduler.Lane;
 
 /**
  * @author denis
@@ -87,9 +107,6 @@ import org.vaadin.netbeans.utils.POMUtils;
 abstract class VaadinSupportImpl extends ProjectOpenedHook
         implements VaadinSupport {
 
-    static RequestProcessor REQUEST_PROCESSOR = new RequestProcessor(
-            VaadinSupportImpl.class);
-
     private static final String VAADIN_CHECK_CLASS = "com.vaadin.server.VaadinRequest";// NOI18N
 
     private static final String VAADIN_REQUEST_FQN = VAADIN_CHECK_CLASS
@@ -98,21 +115,76 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
     static final Logger LOG = Logger
             .getLogger(VaadinSupportImpl.class.getName());
 
-    private static final int MAX_SOURCE_CLASSES = 500;
-
     private static final String VAADIN_CLIENT_COMPILER = "vaadin-client-compiler"; // NOI18N
 
+    private static final String SUBTYPES_CACHE = "subtypes"; // NOI18N
+
+    private static final String OUTPUT_MANIFEST_CACHE = "output"; // NOI18N
+
+    private static final AtomicBoolean SHARED_DATA_REQUESTED = new AtomicBoolean();
+
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(15);
+
+    private static final int IDLE_CHECK_PERIOD = (int) TimeUnit.MINUTES
+            .toMillis(5);
+
+    /*
+     * Per element sizes used to estimate retained memory. They are rough
+     * averages (handle or file object reference, map entry, strings) and are
+     * not measured on the running VM.
+     */
+    private static final long TYPE_ENTRY_SIZE = 160;
+
+    private static final long GWT_MODULE_ENTRY_SIZE = 120;
+
+    /*
+     * GWT model is estimated by the module file size: the XML model keeps the
+     * document text along with its DOM and components trees.
+     */
+    private static final long GWT_MODEL_BASE_SIZE = 4 * 1024;
+
+    private static final long GWT_MODEL_SIZE_PER_BYTE = 12;
+
+    private static final long SERVLET_CONFIGURATION_SIZE = 512;
+
+    private static final long OUTPUT_ENTRY_SIZE = 150;
+
+    private static final long LISTENER_SIZE = 256;
+
+    private static final long ACTION_ENTRY_SIZE = 96;
+
     protected VaadinSupportImpl(Project project) {
         myProject = project;
-        isEnabled = new AtomicReference<>();
-        myResourcesListener = new ResourcesListener(this);
+        myEnabledLock = new Object();
+        myResourcesListener = new ResourcesListener(this,
+                getCacheFile(OUTPUT_MANIFEST_CACHE));
+        myListenedRoots = Collections
+                .newSetFromMap(new ConcurrentHashMap<File, Boolean>());
         myActions = new ConcurrentHashMap<>();
-        myModel = new VaadinModelImpl(project);
+        myPomSnapshots = new PomSnapshot.Cache();
+        myModel = new VaadinModelImpl(project, myPomSnapshots);
         myDownloadListener = new ReloadProjectListener();
-        myTypesCount = new AtomicInteger();
+        myEntriesListener = new ClassPathEntriesListener();
+        myCountedTypes = Collections
+                .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        myTypesRescans = new AtomicInteger();
         myStrategy = new AtomicReference<SourceDescendantsStrategy>(
                 new EmptyStrategy());
+        mySubtypeGraph = new SubtypeGraphStrategy(getCacheFile(SUBTYPES_CACHE));
+        myAllClassesStrategy = new AllClassesStrategy();
+        // all classes strategy is the last resort: its warm-up resolves all
+        // the types
+        myAdaptiveStrategy = new AdaptiveStrategy(mySubtypeGraph,
+                new RecursiveStrategy(), myAllClassesStrategy);
         myIndexListener = new ClassIndexListenerImpl();
+        myTypesQueue = new TypesEventQueue();
+        myPipeline = new AtomicReference<>();
+        myModeLock = new Object();
+        myWatchedRoots = Collections
+                .newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+        myWakeUp = new WakeUp();
+        myIdleTask = Scheduler.getInstance().create(Lane.PROJECT, project,
+                new IdleCheck());
     }
 
     @Override
@@ -125,7 +197,11 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         if (isWeb()) {
             return null;
         } else {
-            return getPomWidgetsets(getAddOnConfigFile());
+            PomSnapshot snapshot = myPomSnapshots.get(getAddOnConfigFile());
+            if (snapshot == null) {
+                return Collections.emptyList();
+            }
+            return new ArrayList<>(snapshot.getWidgetsets());
         }
     }
 
@@ -238,23 +314,23 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         }
         // if projectOpened() still in progress or project is closing. Fix for
         // #12555,#18662
-        if (myClasspathInfo == null) {
+        ClasspathInfo info = getClassPathInfo();
+        if (info == null) {
             return false;
         }
-        Boolean enabled = isEnabled.get();
+        Boolean enabled = isEnabled;
         if (enabled == null) {
-            ClassPath classPath = myClasspathInfo
-                    .getClassPath(PathKind.COMPILE);
-            // if projectOpened() still in progress. Fix for #12555
-            ClasspathInfo info = getClassPathInfo();
-            if (info == null) {
-                return false;
-            }
-            if (classPath.findResource(VAADIN_REQUEST_FQN + ".class") != null) { // NOI18N
-                return true;
-            }
-            classPath = info.getClassPath(PathKind.SOURCE);
-            return classPath.findResource(VAADIN_REQUEST_FQN + ".java") != null;
+            /*
+             * The value is cached until classpath entries are changed or the
+             * project is reloaded
+             */
+            long stamp = getEnabledStamp();
+            boolean found = info.getClassPath(PathKind.COMPILE)
+                    .findResource(VAADIN_REQUEST_FQN + ".class") != null // NOI18N
+                    || info.getClassPath(PathKind.SOURCE)
+                            .findResource(VAADIN_REQUEST_FQN + ".java") != null; // NOI18N
+            setEnabled(found, stamp);
+            return found;
         }
         return enabled;
     }
@@ -262,6 +338,7 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
     @Override
     public void runModelOperation(final ModelOperation operation)
             throws IOException {
+        touch();
         Future<Void> future = invoke(new Task<CompilationController>() {
 
             @Override
@@ -287,7 +364,7 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         FileObject pom = FileUtil
                 .toFileObject(FileUtil.normalizeFile(mavenProject.getFile()));
         String version = getVaadinVersion(pom);
-        if (version == null) {
+        if (version == null && mavenProject.getParentFile() != null) {
             version = getVaadinVersion(FileUtil.toFileObject(
                     FileUtil.normalizeFile(mavenProject.getParentFile())));
         }
@@ -298,6 +375,37 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         return version;
     }
 
+    @Override
+    public boolean isLowMemoryMode() {
+        return isLowMemory;
+    }
+
+    @Override
+    public Map<String, Long> getRetainedSizes() {
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        sizes.put("subtypeGraph", mySubtypeGraph.size() * TYPE_ENTRY_SIZE); // NOI18N
+        sizes.put("allClasses", // NOI18N
+                myAllClassesStrategy.size() * TYPE_ENTRY_SIZE);
+        sizes.put("countedTypes", getTypesCount() * TYPE_ENTRY_SIZE); // NOI18N
+        sizes.put("gwtModules", // NOI18N
+                myModel.getModuleIndex().size() * GWT_MODULE_ENTRY_SIZE);
+        sizes.put("gwtModel", getGwtModelSize()); // NOI18N
+        sizes.put("servletConfigurations", // NOI18N
+                myModel.getServletConfigurationsCount()
+                        * SERVLET_CONFIGURATION_SIZE);
+        sizes.put("outputJournal", // NOI18N
+                myResourcesListener.getMirroredCount() * OUTPUT_ENTRY_SIZE);
+        sizes.put("fileListeners", // NOI18N
+                (myListenedRoots.size() + myWatchedRoots.size())
+                        * LISTENER_SIZE);
+        int actions = 0;
+        for (Set<ExecutorTask> tasks : myActions.values()) {
+            actions += tasks.size() + 1;
+        }
+        sizes.put("actions", actions * ACTION_ENTRY_SIZE); // NOI18N
+        return sizes;
+    }
+
     @Override
     public ClasspathInfo getClassPathInfo() {
         return myClasspathInfo;
@@ -305,6 +413,7 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
 
     @Override
     public SourceDescendantsStrategy getDescendantStrategy() {
+        touch();
         return myStrategy.get();
     }
 
@@ -315,13 +424,38 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
 
     @Override
     protected void projectClosed() {
-        removeFileSystemListener();
+        myIdleTask.cancel();
+        synchronized (myModeLock) {
+            isLowMemory = false;
+            unwatchRoots();
+            removeFileSystemListener();
+        }
         NbMavenProject mvnProject = getProject().getLookup()
                 .lookup(NbMavenProject.class);
         mvnProject.removePropertyChangeListener(myDownloadListener);
 
-        myClasspathInfo = null;
+        InitPipeline pipeline = myPipeline.getAndSet(null);
+        if (pipeline != null) {
+            pipeline.cancel();
+        }
+        synchronized (myIndexListener) {
+            if (myClasspathInfo != null) {
+                listenEntries(myClasspathInfo, false);
+            }
+            myClasspathInfo = null;
+        }
+        resetEnabled();
+        myCountedRoots = null;
+        WidgetsetProjectCache.getInstance().clear();
         myModel.cleanup(false);
+
+        Scheduler.getInstance().cancel(Lane.PROJECT, getProject());
+        /*
+         * Caches are stored right away: posted task may never run if the IDE
+         * exits
+         */
+        myResourcesListener.storeManifest();
+        mySubtypeGraph.store();
     }
 
     @Override
@@ -331,13 +465,22 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         mvnProject.addPropertyChangeListener(myDownloadListener);
 
         ProjectUtils.getSources(myProject).addChangeListener(myIndexListener);
+        WidgetsetProjectCache.getInstance().clear();
         initializeClassIndex(true);
+        touch();
+        myIdleTask.schedule(IDLE_CHECK_PERIOD);
 
-        setTypesCount();
+        if (SHARED_DATA_REQUESTED.compareAndSet(false, true)) {
+            Scheduler.getInstance().post(Lane.NETWORK, null, new Runnable() {
 
-        // init versions and add-ons related data
-        AddOnProvider.getInstance();
-        VaadinVersions.getInstance();
+                @Override
+                public void run() {
+                    // init versions and add-ons related data
+                    AddOnProvider.getInstance();
+                    VaadinVersions.getInstance();
+                }
+            });
+        }
     }
 
     protected ClasspathInfo createClasspathInfo() {
@@ -359,18 +502,17 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
     }
 
     protected void removeFileSystemListener() {
-        doRemoveListener(getProject());
+        for (File root : myListenedRoots) {
+            if (myListenedRoots.remove(root)) {
+                FileUtil.removeRecursiveListener(myResourcesListener, root);
+            }
+        }
     }
 
     protected void initializeFileSystemListener() {
         doAddListener(getProject());
     }
 
-    protected void doRemoveListener(Project project) {
-        removeListener(JavaUtils.getJavaSourceGroups(project));
-        removeListener(JavaUtils.getResourcesSourceGroups(project));
-    }
-
     protected void doAddListener(Project project) {
         addListener(JavaUtils.getJavaSourceGroups(project));
         addListener(JavaUtils.getResourcesSourceGroups(project));
@@ -380,52 +522,105 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         return sourceRootsAffected(event, null);
     }
 
-    protected void initializeClassIndex(boolean reinitResourceListener) {
-        try {
-            ClasspathInfo info = createClasspathInfo();
-            info.getClassIndex().addClassIndexListener(myIndexListener);
-            synchronized (myIndexListener) {
-                if (myClasspathInfo != null) {
-                    myClasspathInfo.getClassIndex()
-                            .removeClassIndexListener(myIndexListener);
-                }
-                myClasspathInfo = info;
+    /**
+     * Starts staged initialization of the project model. Initialization which
+     * is still in progress is cancelled.
+     */
+    protected void initializeClassIndex(final boolean reinitResourceListener) {
+        InitPipeline pipeline = new InitPipeline(getProject());
+        pipeline.add(Stage.CLASSPATH, new StageTask() {
+
+            @Override
+            public void run(StageResult result) {
+                initClasspathInfo();
+                result.complete(true);
             }
-            invoke(new InitTask(reinitResourceListener));
-        } catch (IOException e) {
-            LOG.log(Level.INFO, null, e);
-        }
-    }
+        }).add(Stage.ENABLEMENT, new StageTask() {
 
-    protected boolean hasClientCompilerDependency(Project project) {
-        for (Artifact artifact : getDependecies(project)) {
-            if (POMUtils.VAADIN_GROUP_ID.equals(artifact.getGroupId())
-                    && VAADIN_CLIENT_COMPILER
-                            .equals(artifact.getArtifactId())) {
-                return true;
+            @Override
+            public void run(StageResult result) throws Exception {
+                runStageTask(new Task<CompilationController>() {
+
+                    @Override
+                    public void run(CompilationController controller)
+                            throws Exception {
+                        long stamp = getEnabledStamp();
+                        controller.toPhase(Phase.ELEMENTS_RESOLVED);
+                        boolean enabled = controller.getElements()
+                                .getTypeElement(VAADIN_CHECK_CLASS) != null;
+                        if (!enabled) {
+                            myModel.cleanup(false);
+                        }
+                        setEnabled(enabled, stamp);
+                    }
+                }, result);
             }
-        }
-        return false;
-    }
+        }).add(Stage.LISTENERS, new StageTask() {
 
-    void addListener(FileObject fileObject) {
-        if (fileObject.isFolder()) {
-            fileObject.addFileChangeListener(myResourcesListener);
-            FileObject[] children = fileObject.getChildren();
-            for (FileObject child : children) {
-                addListener(child);
+            @Override
+            public void run(StageResult result) {
+                result.complete(updateListeners(reinitResourceListener));
             }
+        }).add(Stage.SERVLET_MODEL, new StageTask() {
+
+            @Override
+            public void run(StageResult result) throws Exception {
+                runStageTask(new Task<CompilationController>() {
+
+                    @Override
+                    public void run(CompilationController controller)
+                            throws Exception {
+                        controller.toPhase(Phase.ELEMENTS_RESOLVED);
+                        myModel.clearConfigurations();
+                        initClassModel(controller);
+                    }
+                }, result);
+            }
+        }).add(Stage.GWT_MODULE, new StageTask() {
+
+            @Override
+            public void run(StageResult result) {
+                myModel.initGwtXml();
+                isInitialized = true;
+                result.complete(true);
+            }
+        }).add(Stage.WARM_UP, new StageTask() {
+
+            @Override
+            public void run(StageResult result) throws Exception {
+                runStageTask(new CountProjectClasses(), result);
+            }
+        });
+        InitPipeline previous = myPipeline.getAndSet(pipeline);
+        if (previous != null) {
+            previous.cancel();
         }
+        pipeline.start();
     }
 
-    void removeListener(FileObject fileObject) {
-        if (fileObject.isFolder()) {
-            fileObject.removeFileChangeListener(myResourcesListener);
-            FileObject[] children = fileObject.getChildren();
-            for (FileObject child : children) {
-                removeListener(child);
-            }
+    /**
+     * Looks for the client compiler among dependencies declared in the POM
+     * of the {@code project} or its parent. The cached POM snapshots are used
+     * so the POM model is not opened again.
+     */
+    protected boolean hasClientCompilerDependency(Project project) {
+        String dependency = POMUtils.VAADIN_GROUP_ID + ':'
+                + VAADIN_CLIENT_COMPILER;
+        MavenProject mavenProject = project.getLookup()
+                .lookup(NbMavenProject.class).getMavenProject();
+        PomSnapshot snapshot = myPomSnapshots.get(getPom(project));
+        if (snapshot != null
+                && snapshot.getDependencies().contains(dependency)) {
+            return true;
         }
+        File parent = mavenProject.getParentFile();
+        if (parent == null) {
+            return false;
+        }
+        snapshot = myPomSnapshots.get(FileUtil.toFileObject(FileUtil
+                .normalizeFile(parent)));
+        return snapshot != null
+                && snapshot.getDependencies().contains(dependency);
     }
 
     Future<Void> invoke(final Task<CompilationController> task,
@@ -447,7 +642,9 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         }
     }
 
-    VaadinModelImpl getModel() {
+    @Override
+    public VaadinModelImpl getModel() {
+        touch();
         return myModel;
     }
 
@@ -455,6 +652,168 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         return myProject;
     }
 
+    /**
+     * @return GWT module file of the project, unlike {@link #getModel()} it
+     *         doesn't count as the project access
+     */
+    FileObject getGwtXml() {
+        return myModel.getGwtXml();
+    }
+
+    /**
+     * @return number of source types maintained from class index events
+     */
+    int getTypesCount() {
+        return myCountedTypes.size();
+    }
+
+    /**
+     * @return time of the last full types rescan, 0 if it has not been done
+     *         yet
+     */
+    long getLastTypesRescan() {
+        return myLastTypesRescan;
+    }
+
+    /**
+     * @return number of full types rescans done for the project
+     */
+    int getTypesRescans() {
+        return myTypesRescans.get();
+    }
+
+    /**
+     * @return stamp which has to be passed to
+     *         {@link #setEnabled(boolean, long)}, it's changed on each reset
+     *         of the cached enablement
+     */
+    private long getEnabledStamp() {
+        synchronized (myEnabledLock) {
+            return myEnabledStamp;
+        }
+    }
+
+    /**
+     * Caches the {@code enabled} value unless it has been reset after the
+     * {@code stamp} was taken: the value could be computed from the stale
+     * classpath.
+     */
+    private void setEnabled(boolean enabled, long stamp) {
+        synchronized (myEnabledLock) {
+            if (stamp == myEnabledStamp) {
+                isEnabled = enabled;
+            }
+        }
+    }
+
+    private void resetEnabled() {
+        synchronized (myEnabledLock) {
+            isEnabled = null;
+            myEnabledStamp++;
+        }
+    }
+
+    /**
+     * @return project model, unlike {@link #getModel()} it doesn't count as
+     *         the project access
+     */
+    VaadinModelImpl peekModel() {
+        return myModel;
+    }
+
+    /**
+     * @return {@code true} if the project caches are released, they are
+     *         rebuilt once the project is accessed
+     */
+    boolean isLowMemory() {
+        return isLowMemory;
+    }
+
+    /**
+     * Records project access and schedules leaving low memory mode if the
+     * project has been idle.
+     */
+    private void touch() {
+        myLastAccess = System.currentTimeMillis();
+        if (isLowMemory) {
+            Scheduler.getInstance().post(Lane.PROJECT, getProject(),
+                    WakeUp.class, myWakeUp);
+        }
+    }
+
+    /**
+     * Releases caches of the inactive project: GWT model, subtypes graph (it
+     * is stored into the cache file) and all classes strategy data. Recursive
+     * file listeners are replaced by listeners of the source roots
+     * themselves. Everything is rebuilt lazily on the first access.
+     */
+    private void enterLowMemoryMode() {
+        synchronized (myModeLock) {
+            if (isLowMemory) {
+                return;
+            }
+            isLowMemory = true;
+            List<File> roots = new ArrayList<>(myListenedRoots);
+            removeFileSystemListener();
+            watchRoots(roots);
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.log(Level.FINE,
+                        "Released caches of the project {0}: subtypes graph {1} types, all classes {2} types, {3} GWT modules, GWT model loaded: {4}", // NOI18N
+                        new Object[] { getProject().getProjectDirectory(),
+                                mySubtypeGraph.size(),
+                                myAllClassesStrategy.size(),
+                                myModel.getModuleIndex().size(),
+                                myModel.isGwtModelLoaded() });
+            }
+            mySubtypeGraph.release();
+            myAllClassesStrategy.invalidate();
+            myModel.releaseGwtModel();
+            myModel.getModuleIndex().invalidate();
+        }
+        LOG.log(Level.INFO, "Project {0} enters low memory mode", // NOI18N
+                getProject().getProjectDirectory());
+    }
+
+    /**
+     * Listens changes of the {@code roots} children only, deeper changes are
+     * not tracked in low memory mode.
+     */
+    private void watchRoots(Collection<File> roots) {
+        for (File root : roots) {
+            if (myWatchedRoots.add(root)) {
+                FileUtil.addFileChangeListener(myResourcesListener, root);
+            }
+        }
+    }
+
+    private void unwatchRoots() {
+        for (File root : myWatchedRoots) {
+            if (myWatchedRoots.remove(root)) {
+                FileUtil.removeFileChangeListener(myResourcesListener, root);
+            }
+        }
+    }
+
+    private long getGwtModelSize() {
+        if (!myModel.isGwtModelLoaded()) {
+            return 0;
+        }
+        FileObject gwtXml = myModel.getGwtXml(false);
+        long fileSize = gwtXml == null ? 0 : gwtXml.getSize();
+        return GWT_MODEL_BASE_SIZE + fileSize * GWT_MODEL_SIZE_PER_BYTE;
+    }
+
+    private boolean hasRunningActions() {
+        for (Set<ExecutorTask> tasks : myActions.values()) {
+            for (ExecutorTask task : tasks) {
+                if (!task.isFinished()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private String getPackagingType() {
         NbMavenProject mvnProject = getProject().getLookup()
                 .lookup(NbMavenProject.class);
@@ -462,12 +821,10 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
     }
 
     private void updateSubclassesStrategy() {
-        myStrategy.set(new RecursiveStrategy());
-        if (myTypesCount.get() > MAX_SOURCE_CLASSES) {
-            myStrategy.set(new RecursiveStrategy());
-        } else {
-            myStrategy.set(new AllClassesStrategy());
-        }
+        /*
+         * Strategy is chosen by measured query times, see AdaptiveStrategy.
+         */
+        myStrategy.set(myAdaptiveStrategy);
     }
 
     private boolean sourceRootsAffected(RootsEvent event, Project subject) {
@@ -489,25 +846,89 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         return false;
     }
 
+    /**
+     * Registers one recursive listener per source root instead of listeners
+     * for each folder.
+     */
     private void addListener(SourceGroup[] sourceGroups) {
         for (SourceGroup sourceGroup : sourceGroups) {
-            FileObject root = sourceGroup.getRootFolder();
-            addListener(root);
+            File root = FileUtil.toFile(sourceGroup.getRootFolder());
+            if (root != null && myListenedRoots.add(root)) {
+                FileUtil.addRecursiveListener(myResourcesListener, root,
+                        VisibleFoldersFilter.INSTANCE, null);
+            }
         }
     }
 
-    private void removeListener(SourceGroup[] sourceGroups) {
-        for (SourceGroup sourceGroup : sourceGroups) {
-            FileObject root = sourceGroup.getRootFolder();
-            removeListener(root);
+    private void initClasspathInfo() {
+        ClasspathInfo info = createClasspathInfo();
+        info.getClassIndex().addClassIndexListener(myIndexListener);
+        synchronized (myIndexListener) {
+            ClasspathInfo oldInfo = myClasspathInfo;
+            if (oldInfo != null) {
+                oldInfo.getClassIndex()
+                        .removeClassIndexListener(myIndexListener);
+                listenEntries(oldInfo, false);
+            }
+            listenEntries(info, true);
+            myClasspathInfo = info;
         }
+        resetEnabled();
     }
 
-    private void setTypesCount() {
-        try {
-            invoke(new CountProjectClasses());
-        } catch (IOException e) {
-            LOG.log(Level.INFO, null, e);
+    private void listenEntries(ClasspathInfo info, boolean add) {
+        for (PathKind kind : EnumSet.of(PathKind.COMPILE, PathKind.SOURCE)) {
+            ClassPath classPath = info.getClassPath(kind);
+            if (add) {
+                classPath.addPropertyChangeListener(myEntriesListener);
+            } else {
+                classPath.removePropertyChangeListener(myEntriesListener);
+            }
+        }
+    }
+
+    private boolean updateListeners(boolean reinitResourceListener) {
+        synchronized (myModeLock) {
+            if (!Boolean.TRUE.equals(isEnabled)) {
+                removeFileSystemListener();
+                return false;
+            }
+            // recursive listeners are registered on leaving low memory mode
+            if (!reinitResourceListener || isLowMemory) {
+                return true;
+            }
+            removeFileSystemListener();
+            initializeFileSystemListener();
+        }
+        LOG.log(Level.FINE,
+                "{0} recursive file listeners are registered for the project {1}", // NOI18N
+                new Object[] { myListenedRoots.size(),
+                        getProject().getProjectDirectory() });
+        return true;
+    }
+
+    /**
+     * Runs the compilation {@code task} of the pipeline stage. The stage is
+     * completed from the task itself, so the lane thread doesn't wait for
+     * the end of scanning.
+     */
+    private void runStageTask(final Task<CompilationController> task,
+            final StageResult result) throws IOException {
+        Future<Void> future = invoke(new Task<CompilationController>() {
+
+            @Override
+            public void run(CompilationController controller) {
+                try {
+                    task.run(controller);
+                    result.complete(true);
+                } catch (Exception e) {
+                    result.fail(e);
+                }
+            }
+        });
+        if (future == null) {
+            // no-op if the task has been run synchronously
+            result.complete(false);
         }
     }
 
@@ -516,18 +937,28 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         return invoke(task, !isReady());
     }
 
-    private String getVaadinVersion(FileObject pom) {
-        final String[] version = new String[1];
-        org.netbeans.modules.maven.model.ModelOperation<POMModel> operation = new org.netbeans.modules.maven.model.ModelOperation<POMModel>() {
+    /**
+     * @return cache file of the project, its name is the digest of the
+     *         project path so different projects never share a file
+     */
+    private File getCacheFile(String cache) {
+        File vaadinFolder = new File(Places.getCacheDirectory(),
+                AbstractRetriever.VAADIN);
+        String projectPath = getProject().getProjectDirectory().getPath();
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest( // NOI18N
+                    projectPath.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return new File(new File(vaadinFolder, cache),
+                new BigInteger(1, digest).toString(16));
+    }
 
-            @Override
-            public void performOperation(POMModel model) {
-                version[0] = POMUtils.getVaadinVersion(model);
-            }
-        };
-        Utilities.performPOMModelOperations(pom,
-                Collections.singletonList(operation));
-        return version[0];
+    private String getVaadinVersion(FileObject pom) {
+        PomSnapshot snapshot = myPomSnapshots.get(pom);
+        return snapshot == null ? null : snapshot.getVaadinVersion();
     }
 
     protected static ClassPath getClassPath(Project project, String type) {
@@ -551,36 +982,6 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         return FileUtil.toFileObject(FileUtil.normalizeFile(file));
     }
 
-    static List<String> getPomWidgetsets(FileObject pom) {
-        final String[] widgetset = new String[1];
-        org.netbeans.modules.maven.model.ModelOperation<POMModel> operation = new org.netbeans.modules.maven.model.ModelOperation<POMModel>() {
-
-            @Override
-            public void performOperation(POMModel model) {
-                POMExtensibilityElement widgetsets = POMUtils
-                        .getWidgetsets(model);
-                if (widgetsets != null) {
-                    widgetset[0] = widgetsets.getElementText().trim();
-                }
-            }
-        };
-        Utilities.performPOMModelOperations(pom,
-                Collections.singletonList(operation));
-        if (widgetset[0] == null) {
-            return Collections.emptyList();
-        } else {
-            StringTokenizer tokenizer = new StringTokenizer(widgetset[0], ",");
-            List<String> result = new LinkedList<>();
-            while (tokenizer.hasMoreTokens()) {
-                String nextWidgetset = tokenizer.nextToken().trim();
-                if (nextWidgetset.length() > 0) {
-                    result.add(nextWidgetset);
-                }
-            }
-            return result;
-        }
-    }
-
     static Set<Artifact> getDependecies(Project project) {
         NbMavenProject nbMvnProject = project.getLookup()
                 .lookup(NbMavenProject.class);
@@ -588,67 +989,87 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         return mavenProject.getArtifacts();
     }
 
-    private final class InitTask implements Task<CompilationController> {
-
-        private final boolean initResourceListener;
-
-        private InitTask(boolean reinitResourceListener) {
-            initResourceListener = reinitResourceListener;
-        }
+    /**
+     * Performs full types count. The count is kept up to date via class index
+     * events afterwards so the rescan is done only on cold start and when
+     * the set of source roots is changed.
+     */
+    private final class CountProjectClasses
+            implements Task<CompilationController> {
 
         @Override
         public void run(CompilationController controller) throws Exception {
-            controller.toPhase(Phase.ELEMENTS_RESOLVED);
-
-            if (controller.getElements()
-                    .getTypeElement(VAADIN_CHECK_CLASS) == null) {
-                isEnabled.set(false);
-                myModel.cleanup(false);
-                REQUEST_PROCESSOR.execute(new Runnable() {
-
-                    @Override
-                    public void run() {
-                        removeFileSystemListener();
-                    }
-                });
+            List<FileObject> roots = Arrays.asList(controller
+                    .getClasspathInfo().getClassPath(PathKind.SOURCE)
+                    .getRoots());
+            if (roots.equals(myCountedRoots)) {
                 return;
             }
-            isEnabled.set(true);
-
-            if (initResourceListener) {
-                REQUEST_PROCESSOR.execute(new Runnable() {
-
-                    @Override
-                    public void run() {
-                        removeFileSystemListener();
-                        initializeFileSystemListener();
-                    }
-                });
+            long start = System.currentTimeMillis();
+            Set<ElementHandle<TypeElement>> handles = controller
+                    .getClasspathInfo().getClassIndex().getDeclaredTypes("",
+                            NameKind.PREFIX, EnumSet.of(SearchScope.SOURCE));
+            if (handles == null) {
+                throw new InterruptedException(
+                        "ClassIndex.getDeclaredTypes() was interrupted"); // NOI18N
             }
-
-            myModel.cleanup(true);
-
-            initClassModel(controller);
-            isInitialized = true;
+            Set<String> names = new HashSet<>(handles.size());
+            for (ElementHandle<TypeElement> handle : handles) {
+                names.add(handle.getBinaryName());
+            }
+            myCountedTypes.retainAll(names);
+            myCountedTypes.addAll(names);
+            myCountedRoots = roots;
+            myAdaptiveStrategy.warmUp(controller);
+            myLastTypesRescan = System.currentTimeMillis();
+            int rescans = myTypesRescans.incrementAndGet();
+            LOG.log(Level.FINE,
+                    "Full types rescan #{0} for the project {1}: {2} types, {3} ms", // NOI18N
+                    new Object[] { rescans, getProject().getProjectDirectory(),
+                            handles.size(), myLastTypesRescan - start });
+            updateSubclassesStrategy();
         }
+
     }
 
-    private final class CountProjectClasses
-            implements Runnable, Task<CompilationController> {
+    /**
+     * Leaves low memory mode: recursive file listeners are registered again
+     * and the data which depends on missed file events is re-synced.
+     */
+    private final class WakeUp implements Runnable {
 
         @Override
-        public void run(CompilationController controller) throws Exception {
-            controller.toPhase(Phase.ELEMENTS_RESOLVED);
-
-            Set<TypeElement> allTypes = AllClassesStrategy
-                    .findAllTypes(controller, EnumSet.allOf(ElementKind.class));
-            myTypesCount.set(allTypes.size());
-            updateSubclassesStrategy();
+        public void run() {
+            synchronized (myModeLock) {
+                if (!isLowMemory || getClassPathInfo() == null) {
+                    return;
+                }
+                isLowMemory = false;
+                unwatchRoots();
+                initializeFileSystemListener();
+            }
+            LOG.log(Level.INFO, "Project {0} leaves low memory mode", // NOI18N
+                    getProject().getProjectDirectory());
+            myModel.getModuleIndex().invalidate();
+            myModel.scheduleGwtSync();
+            myIdleTask.schedule(IDLE_CHECK_PERIOD);
         }
 
+    }
+
+    private final class IdleCheck implements Runnable {
+
         @Override
         public void run() {
-            REQUEST_PROCESSOR.post(this);
+            if (getClassPathInfo() == null || isLowMemory) {
+                return;
+            }
+            long idle = System.currentTimeMillis() - myLastAccess;
+            if (idle >= IDLE_TIMEOUT && isInitialized && !hasRunningActions()) {
+                enterLowMemoryMode();
+            } else {
+                myIdleTask.schedule(IDLE_CHECK_PERIOD);
+            }
         }
 
     }
@@ -658,71 +1079,43 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
         @Override
         public void propertyChange(PropertyChangeEvent evt) {
             if (NbMavenProject.PROP_PROJECT.equals(evt.getPropertyName())) {
+                resetEnabled();
+                myPomSnapshots.clear();
+                WidgetsetProjectCache.getInstance().invalidate(getProject());
                 initializeClassIndex(false);
             }
         }
 
     }
 
-    private final class ClassIndexListenerImpl
-            implements ClassIndexListener, ChangeListener {
+    private final class ClassPathEntriesListener
+            implements PropertyChangeListener {
 
         @Override
-        public void typesAdded(final TypesEvent event) {
-            try {
-                invoke(new Task<CompilationController>() {
-
-                    @Override
-                    public void run(CompilationController controller)
-                            throws Exception {
-                        controller.toPhase(Phase.ELEMENTS_RESOLVED);
-                        updateModel(event, controller, true);
-                    }
-                });
-            } catch (IOException e) {
-                LOG.log(Level.INFO, null, e);
+        public void propertyChange(PropertyChangeEvent evt) {
+            if (ClassPath.PROP_ENTRIES.equals(evt.getPropertyName())) {
+                resetEnabled();
             }
         }
 
-        @Override
-        public void typesRemoved(final TypesEvent event) {
-            try {
-                invoke(new Task<CompilationController>() {
+    }
 
-                    @Override
-                    public void run(CompilationController controller)
-                            throws Exception {
-                        controller.toPhase(Phase.ELEMENTS_RESOLVED);
-                        Iterable<? extends ElementHandle<TypeElement>> types = event
-                                .getTypes();
-                        int count = 0;
-                        for (ElementHandle<TypeElement> elementHandle : types) {
-                            count++;
-                            remove(controller, elementHandle);
-                        }
-                        myTypesCount.addAndGet(-count);
-                    }
-                });
-            } catch (IOException e) {
-                LOG.log(Level.INFO, null, e);
-            }
+    private final class ClassIndexListenerImpl
+            implements ClassIndexListener, ChangeListener {
+
+        @Override
+        public void typesAdded(TypesEvent event) {
+            myTypesQueue.add(event, TypesChange.ADDED);
         }
 
         @Override
-        public void typesChanged(final TypesEvent event) {
-            try {
-                invoke(new Task<CompilationController>() {
+        public void typesRemoved(TypesEvent event) {
+            myTypesQueue.add(event, TypesChange.REMOVED);
+        }
 
-                    @Override
-                    public void run(CompilationController controller)
-                            throws Exception {
-                        controller.toPhase(Phase.ELEMENTS_RESOLVED);
-                        updateModel(event, controller, false);
-                    }
-                });
-            } catch (IOException e) {
-                LOG.log(Level.INFO, null, e);
-            }
+        @Override
+        public void typesChanged(TypesEvent event) {
+            myTypesQueue.add(event, TypesChange.CHANGED);
         }
 
         @Override
@@ -743,53 +1136,215 @@ abstract class VaadinSupportImpl extends ProjectOpenedHook
             rootsChanged(sourceRootsAffected(event, getProject()));
         }
 
-        private void updateModel(TypesEvent event,
-                CompilationController controller, boolean added) {
-            Iterable<? extends ElementHandle<TypeElement>> types = event
-                    .getTypes();
-            int count = 0;
-            for (ElementHandle<TypeElement> elementHandle : types) {
-                TypeElement element = elementHandle.resolve(controller);
-                if (element != null) {
-                    VaadinSupportImpl.this.updateModel(controller, element);
-                    count++;
+        private void rootsChanged(boolean reinitResourceListener) {
+            if (reinitResourceListener) {
+                mySubtypeGraph.invalidate();
+                myAllClassesStrategy.invalidate();
+                myModel.getModuleIndex().invalidate();
+            }
+            initializeClassIndex(reinitResourceListener);
+        }
+
+    }
+
+    /**
+     * Skips folders which are not visible (VCS metadata, etc.) while
+     * registering recursive listener.
+     */
+    private static final class VisibleFoldersFilter implements FileFilter {
+
+        static final VisibleFoldersFilter INSTANCE = new VisibleFoldersFilter();
+
+        @Override
+        public boolean accept(File file) {
+            return VisibilityQuery.getDefault().isVisible(file);
+        }
+    }
+
+    private enum TypesChange {
+        ADDED,
+        CHANGED,
+        REMOVED;
+
+        /**
+         * @return resulting change for the type which already has pending
+         *         {@code previous} change, {@code null} if changes cancel each
+         *         other
+         */
+        TypesChange merge(TypesChange previous) {
+            if (previous == null) {
+                return this;
+            }
+            switch (this) {
+                case ADDED:
+                    return previous == REMOVED ? CHANGED : previous;
+                case CHANGED:
+                    return previous == ADDED ? ADDED : CHANGED;
+                default:
+                    return previous == ADDED ? null : REMOVED;
+            }
+        }
+    }
+
+    /**
+     * Collects class index type events during a short period of time and
+     * applies them at once within one compilation task. Several events for
+     * the same type are merged into one change.
+     */
+    private final class TypesEventQueue implements Runnable {
+
+        private static final int EVENTS_DELAY = 300;
+
+        TypesEventQueue() {
+            myTask = Scheduler.getInstance().create(Lane.PROJECT,
+                    getProject(), this);
+            myChanges = new LinkedHashMap<>();
+        }
+
+        @Override
+        public void run() {
+            final Map<ElementHandle<TypeElement>, TypesChange> changes;
+            synchronized (this) {
+                changes = myChanges;
+                myChanges = new LinkedHashMap<>();
+                isScheduled = false;
+            }
+            if (changes.isEmpty()) {
+                return;
+            }
+            try {
+                invoke(new Task<CompilationController>() {
+
+                    @Override
+                    public void run(CompilationController controller)
+                            throws Exception {
+                        controller.toPhase(Phase.ELEMENTS_RESOLVED);
+                        apply(changes, controller);
+                    }
+                });
+            } catch (IOException e) {
+                LOG.log(Level.INFO, null, e);
+            }
+        }
+
+        synchronized void add(TypesEvent event, TypesChange change) {
+            for (ElementHandle<TypeElement> handle : event.getTypes()) {
+                TypesChange merged = change.merge(myChanges.get(handle));
+                if (merged == null) {
+                    myChanges.remove(handle);
+                } else {
+                    myChanges.put(handle, merged);
                 }
             }
-            if (added) {
-                myTypesCount.addAndGet(count);
+            if (!isScheduled) {
+                isScheduled = true;
+                myTask.schedule(EVENTS_DELAY);
             }
-            updateSubclassesStrategy();
         }
 
-        private void rootsChanged(boolean reinitResourceListener) {
-            initializeClassIndex(reinitResourceListener);
-            if (reinitResourceListener) {
-                setTypesCount();
+        private void apply(Map<ElementHandle<TypeElement>, TypesChange> changes,
+                CompilationController controller) {
+            List<ElementHandle<TypeElement>> removed = new ArrayList<>();
+            List<ElementHandle<TypeElement>> updated = new ArrayList<>(
+                    changes.size());
+            for (Entry<ElementHandle<TypeElement>, TypesChange> entry : changes
+                    .entrySet()) {
+                if (entry.getValue() == TypesChange.REMOVED) {
+                    removed.add(entry.getKey());
+                } else {
+                    updated.add(entry.getKey());
+                }
+            }
+
+            for (ElementHandle<TypeElement> handle : removed) {
+                remove(controller, handle);
+                // types which have never been counted are not subtracted
+                myCountedTypes.remove(handle.getBinaryName());
             }
+            for (ElementHandle<TypeElement> handle : updated) {
+                TypeElement element = handle.resolve(controller);
+                if (element != null) {
+                    updateModel(controller, element);
+                    myCountedTypes.add(handle.getBinaryName());
+                }
+            }
+
+            myAdaptiveStrategy.typesChanged(changes.size());
+            mySubtypeGraph.remove(removed, controller);
+            myAllClassesStrategy.remove(removed);
+            mySubtypeGraph.update(updated, controller);
+            myAllClassesStrategy.update(updated, controller);
         }
 
+        private final RequestProcessor.Task myTask;
+
+        private Map<ElementHandle<TypeElement>, TypesChange> myChanges;
+
+        private boolean isScheduled;
     }
 
     private final Project myProject;
 
     private final VaadinModelImpl myModel;
 
+    private final PomSnapshot.Cache myPomSnapshots;
+
     private volatile boolean isInitialized;
 
     private volatile ClasspathInfo myClasspathInfo;
 
-    private final AtomicReference<Boolean> isEnabled;
+    private volatile Boolean isEnabled;
+
+    private long myEnabledStamp;
+
+    private final Object myEnabledLock;
+
+    /*
+     * Binary names of the counted source types: removal of a type which has
+     * not been counted doesn't change the count
+     */
+    private final Set<String> myCountedTypes;
 
-    private final AtomicInteger myTypesCount;
+    private final AtomicInteger myTypesRescans;
+
+    private volatile long myLastTypesRescan;
+
+    private volatile List<FileObject> myCountedRoots;
 
     private final AtomicReference<SourceDescendantsStrategy> myStrategy;
 
+    private final SubtypeGraphStrategy mySubtypeGraph;
+
+    private final AllClassesStrategy myAllClassesStrategy;
+
+    private final AdaptiveStrategy myAdaptiveStrategy;
+
     private final ResourcesListener myResourcesListener;
 
+    private final Set<File> myListenedRoots;
+
     private final ConcurrentHashMap<Action, Set<ExecutorTask>> myActions;
 
     private final PropertyChangeListener myDownloadListener;
 
+    private final PropertyChangeListener myEntriesListener;
+
     private final ClassIndexListenerImpl myIndexListener;
 
+    private final TypesEventQueue myTypesQueue;
+
+    private final AtomicReference<InitPipeline> myPipeline;
+
+    private final Object myModeLock;
+
+    private final Set<File> myWatchedRoots;
+
+    private final WakeUp myWakeUp;
+
+    private volatile boolean isLowMemory;
+
+    private final RequestProcessor.Task myIdleTask;
+
+    private volatile long myLastAccess;
+
 }
@@ -16,7 +16,6 @@
 package org.vaadin.netbeans.impl;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -24,7 +23,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.WeakHashMap;
-import java.util.logging.Level;
 
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.TypeElement;
@@ -50,8 +48,6 @@ import org.netbeans.spi.project.ui.ProjectOpenedHook;
 import org.openide.filesystems.FileObject;
 import org.openide.util.Utilities;
 import org.vaadin.netbeans.VaadinSupport;
-import org.vaadin.netbeans.model.ModelOperation;
-import org.vaadin.netbeans.model.VaadinModel;
 import org.vaadin.netbeans.utils.JavaUtils;
 
 /**
@@ -69,24 +65,15 @@ public class WebVaadinSupportImpl extends VaadinSupportImpl {
     @Override
     public Project getWidgetsetProject() {
         if (isWeb()) {
-            if (hasGwtModel(getProject(), this)) {
-                return getProject();
+            WidgetsetProjectCache cache = WidgetsetProjectCache.getInstance();
+            Project owner = cache.get(getProject());
+            if (owner == null) {
+                long stamp = cache.getStamp();
+                List<Project> dependencies = new ArrayList<>();
+                owner = findWidgetsetProject(dependencies);
+                cache.put(getProject(), owner, dependencies, stamp);
             }
-            for (File file : getRuntimeDependecies(getProject())) {
-                Project dependency = FileOwnerQuery
-                        .getOwner(Utilities.toURI(file));
-                if (dependency != null) {
-                    VaadinSupport support = dependency.getLookup()
-                            .lookup(VaadinSupport.class);
-                    if (support != null && support.isEnabled()
-                            && !support.isWeb()
-                            && hasClientCompilerDependency(dependency)
-                            && hasGwtModel(dependency, support)) {
-                        return dependency;
-                    }
-                }
-            }
-            return getProject();
+            return owner;
         } else {
             return super.getWidgetsetProject();
         }
@@ -148,8 +135,7 @@ public class WebVaadinSupportImpl extends VaadinSupportImpl {
 
     @Override
     protected void removeFileSystemListener() {
-        Set<Project> allProjects = new HashSet<>();
-        removeListener(getProject(), allProjects);
+        super.removeFileSystemListener();
         myRootsListener.clean();
     }
 
@@ -172,52 +158,47 @@ public class WebVaadinSupportImpl extends VaadinSupportImpl {
         }
     }
 
-    private void removeListener(Project project, Set<Project> projects) {
+    private void addListener(Project project, Set<Project> projects) {
         if (projects.contains(project)) {
             return;
         }
         projects.add(project);
-        doRemoveListener(project);
+        doAddListener(project);
         for (File file : getRuntimeDependecies(project)) {
             Project dependency = FileOwnerQuery.getOwner(Utilities.toURI(file));
             if (dependency != null) {
-                removeListener(dependency, projects);
+                addListener(dependency, projects);
             }
         }
     }
 
-    private void addListener(Project project, Set<Project> projects) {
-        if (projects.contains(project)) {
-            return;
+    private Project findWidgetsetProject(List<Project> dependencies) {
+        if (hasGwtModel(getProject(), this)) {
+            return getProject();
         }
-        projects.add(project);
-        doAddListener(project);
-        for (File file : getRuntimeDependecies(project)) {
+        for (File file : getRuntimeDependecies(getProject())) {
             Project dependency = FileOwnerQuery.getOwner(Utilities.toURI(file));
             if (dependency != null) {
-                addListener(dependency, projects);
+                dependencies.add(dependency);
+                VaadinSupport support = dependency.getLookup()
+                        .lookup(VaadinSupport.class);
+                if (support != null && support.isEnabled() && !support.isWeb()
+                        && hasClientCompilerDependency(dependency)
+                        && hasGwtModel(dependency, support)) {
+                    return dependency;
+                }
             }
         }
+        return getProject();
     }
 
-    private boolean hasGwtModel(final Project project, VaadinSupport support) {
-        final boolean[] result = new boolean[1];
-        try {
-            support.runModelOperation(new ModelOperation() {
-
-                @Override
-                public void run(VaadinModel model) {
-                    FileObject gwtXml = model.getGwtXml();
-                    if (gwtXml == null) {
-                        return;
-                    }
-                    result[0] = project.equals(FileOwnerQuery.getOwner(gwtXml));
-                }
-            });
-        } catch (IOException e) {
-            LOG.log(Level.INFO, null, e);
-        }
-        return result[0];
+    private boolean hasGwtModel(Project project, VaadinSupport support) {
+        // the lookup should not wake up dependency projects
+        FileObject gwtXml = support instanceof VaadinSupportImpl
+                ? ((VaadinSupportImpl) support).getGwtXml()
+                : support.getModel().getGwtXml();
+        return gwtXml != null
+                && project.equals(FileOwnerQuery.getOwner(gwtXml));
     }
 
     private static Set<Artifact> getDependencies(Project project) {
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.netbeans.api.project.Project;
+
+/**
+ * IDE wide cache of projects which own GWT module for web projects.
+ *
+ * The cache keeps dependencies between web projects and projects which have
+ * been visited during the widgetset project lookup. Any change in one of
+ * those projects (reload, GWT module change) invalidates the result for the
+ * dependent web projects.
+ *
+ * Projects are referenced weakly only. A lookup result is stored only if no
+ * invalidation has happened since the lookup has been started (see
+ * {@link #getStamp()}), so a slow lookup can't store stale result.
+ *
+ * @author denis
+ */
+final class WidgetsetProjectCache {
+
+    private static final WidgetsetProjectCache INSTANCE =
+            new WidgetsetProjectCache();
+
+    private WidgetsetProjectCache() {
+        myOwners = new WeakHashMap<>();
+        myDependents = new WeakHashMap<>();
+    }
+
+    static WidgetsetProjectCache getInstance() {
+        return INSTANCE;
+    }
+
+    synchronized Project get( Project project ) {
+        Reference<Project> owner = myOwners.get(project);
+        return owner == null ? null : owner.get();
+    }
+
+    /**
+     * @return stamp which has to be passed to
+     *         {@link #put(Project, Project, Collection, long)} for the lookup
+     *         started now
+     */
+    synchronized long getStamp() {
+        return myStamp;
+    }
+
+    /**
+     * Stores the lookup result unless the cache has been invalidated after
+     * the {@code stamp} has been taken.
+     */
+    synchronized void put( Project project, Project owner,
+            Collection<Project> dependencies, long stamp )
+    {
+        if (stamp != myStamp) {
+            return;
+        }
+        myOwners.put(project, new WeakReference<>(owner));
+        addDependent(project, project);
+        for (Project dependency : dependencies) {
+            addDependent(dependency, project);
+        }
+    }
+
+    /**
+     * Invalidates cached result for the {@code project} and for all projects
+     * which depend on it.
+     */
+    synchronized void invalidate( Project project ) {
+        myStamp++;
+        Set<Project> dependents = myDependents.remove(project);
+        myOwners.remove(project);
+        if (dependents != null) {
+            for (Project dependent : dependents) {
+                myOwners.remove(dependent);
+            }
+        }
+    }
+
+    /**
+     * Drops the whole cache. Used when set of open projects is changed.
+     */
+    synchronized void clear() {
+        myStamp++;
+        myOwners.clear();
+        myDependents.clear();
+    }
+
+    private void addDependent( Project dependency, Project dependent ) {
+        Set<Project> dependents = myDependents.get(dependency);
+        if (dependents == null) {
+            dependents =
+                    Collections.newSetFromMap(new WeakHashMap<Project, Boolean>());
+            myDependents.put(dependency, dependents);
+        }
+        dependents.add(dependent);
+    }
+
+    private final Map<Project, Reference<Project>> myOwners;
+
+    private final Map<Project, Set<Project>> myDependents;
+
+    private long myStamp;
+}
@@ -15,6 +15,9 @@
  */
 package org.vaadin.netbeans.maven.directory;
 
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -25,6 +28,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.swing.BoundedRangeModel;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JPanel;
 import javax.swing.ListSelectionModel;
@@ -50,6 +54,14 @@ import org.vaadin.netbeans.maven.editor.completion.SearchResult;
  */
 public class SearchPanel extends JPanel {
 
+    private static final int PAGE_SIZE = 50;
+
+    /*
+     * Next page is requested when the table is scrolled to this number of
+     * rows before the end.
+     */
+    private static final int PAGE_THRESHOLD = 10;
+
     enum AnyMaturity {
         ANY;
 
@@ -127,6 +139,15 @@ public class SearchPanel extends JPanel {
                 });
         adjustColumnWidth(true);
 
+        jScrollPane1.getVerticalScrollBar().addAdjustmentListener(
+                new AdjustmentListener() {
+
+                    @Override
+                    public void adjustmentValueChanged( AdjustmentEvent e ) {
+                        loadNextPage();
+                    }
+                });
+
         // Fix for #13142 - Remove the "License Type" filter from Add-Ons browser dialog.
         myLicenseType.setVisible(false);
         license.setVisible(false);
@@ -172,10 +193,38 @@ public class SearchPanel extends JPanel {
     }
 
     public void updateTable() {
-        setData(doSearch());
+        SearchQuery query = createQuery();
+        setData(query, search(query, 0));
+    }
+
+    private Collection<? extends SearchResult> search( SearchQuery query,
+            int offset )
+    {
+        return AddOnProvider.getInstance().searchAddons(query, offset,
+                PAGE_SIZE);
+    }
+
+    /**
+     * Requests the next page of results if the table is scrolled close to its
+     * end (or it's not scrollable at all).
+     */
+    private void loadNextPage() {
+        if (!hasMoreResults || myPageWorker != null) {
+            return;
+        }
+        BoundedRangeModel range =
+                jScrollPane1.getVerticalScrollBar().getModel();
+        if (range.getValue() + range.getExtent() < range.getMaximum()
+                - PAGE_THRESHOLD * myAddons.getRowHeight())
+        {
+            return;
+        }
+        myPageWorker =
+                new PageWorker(myQuery, (AddonsModel) myAddons.getModel());
+        myPageWorker.execute();
     }
 
-    private Collection<? extends SearchResult> doSearch() {
+    private SearchQuery createQuery() {
         MaturityWrapper maturity =
                 (MaturityWrapper) myMaturity.getSelectedItem();
         LicenseType licenseType = (LicenseType) myLicenseType.getSelectedItem();
@@ -204,15 +253,13 @@ public class SearchPanel extends JPanel {
                 fields = EnumSet.of(Field.DESCRIPTION);
                 break;
         }
-        SearchQuery query =
-                new SearchQuery(maturity.getMaturity(), free,
-                        mySearch.getText(), fields);
-        Collection<? extends SearchResult> results =
-                AddOnProvider.getInstance().searchAddons(query);
-        return results;
+        return new SearchQuery(maturity.getMaturity(), free,
+                mySearch.getText(), fields);
     }
 
-    private void setData( Collection<? extends SearchResult> results ) {
+    private void setData( SearchQuery query,
+            Collection<? extends SearchResult> results )
+    {
         TableColumn name = myAddons.getColumnModel().getColumn(0);
         TableColumn rating = myAddons.getColumnModel().getColumn(1);
         TableColumn date = myAddons.getColumnModel().getColumn(2);
@@ -223,12 +270,16 @@ public class SearchPanel extends JPanel {
 
         AddonsModel model = new AddonsModel(results);
         myAddons.setModel(model);
+        myQuery = query;
+        hasMoreResults = results.size() == PAGE_SIZE;
+        myPageWorker = null;
 
         mySelected = null;
 
         adjustColumnWidth(false);
 
         fireChangeEvent();
+        loadNextPage();
     }
 
     private MaturityWrapper[] getMaturities() {
@@ -445,6 +496,12 @@ public class SearchPanel extends JPanel {
 
     private int myDateColumnWidth;
 
+    private SearchQuery myQuery;
+
+    private boolean hasMoreResults;
+
+    private PageWorker myPageWorker;
+
     @NbBundle.Messages({ "addOnName=Add-On Name", "rating=Rating",
             "lastUpdated=Last Updated" })
     private static class AddonsModel extends DefaultTableModel {
@@ -458,12 +515,7 @@ public class SearchPanel extends JPanel {
             super(createData(results), new String[] { Bundle.addOnName(),
                     Bundle.rating(), Bundle.lastUpdated() });
 
-            myResults = new SearchResult[getRowCount()];
-            int i = 0;
-            for (SearchResult result : results) {
-                myResults[i] = result;
-                i++;
-            }
+            myResults = new ArrayList<>(results);
         }
 
         @Override
@@ -489,15 +541,21 @@ public class SearchPanel extends JPanel {
         }
 
         SearchResult getResult( int index ) {
-            return myResults[index];
+            return myResults.get(index);
+        }
+
+        void addResults( Collection<? extends SearchResult> results ) {
+            for (SearchResult result : results) {
+                myResults.add(result);
+                addRow(createRow(result));
+            }
         }
 
         static Object[][] createData( Collection<? extends SearchResult> results )
         {
             List<Object[]> list = new LinkedList<>();
             for (SearchResult result : results) {
-                list.add(new Object[] { result.getName(), result.rating(),
-                        result.lastUpdated() });
+                list.add(createRow(result));
             }
 
             Object[][] data = new Object[list.size()][];
@@ -509,7 +567,12 @@ public class SearchPanel extends JPanel {
             return data;
         }
 
-        private SearchResult[] myResults;
+        private static Object[] createRow( SearchResult result ) {
+            return new Object[] { result.getName(), result.rating(),
+                    result.lastUpdated() };
+        }
+
+        private List<SearchResult> myResults;
 
         private boolean isInitial;
     }
@@ -547,7 +610,8 @@ public class SearchPanel extends JPanel {
         protected Collection<? extends SearchResult> doInBackground()
                 throws Exception
         {
-            return doSearch();
+            myInitQuery = createQuery();
+            return search(myInitQuery, 0);
         }
 
         @Override
@@ -557,13 +621,64 @@ public class SearchPanel extends JPanel {
                 return;
             }
             try {
-                setData(get());
+                setData(myInitQuery, get());
             }
             catch (InterruptedException | ExecutionException e) {
                 Logger.getLogger(SearchPanel.class.getName()).log(Level.INFO,
                         null, e);
             }
         }
+
+        private volatile SearchQuery myInitQuery;
+    }
+
+    /**
+     * Loads the next page of results for the table model. Results are
+     * dropped if the table has got a new search results meanwhile.
+     */
+    private class PageWorker extends
+            SwingWorker<Collection<? extends SearchResult>, Void>
+    {
+
+        PageWorker( SearchQuery query, AddonsModel model ) {
+            myPageQuery = query;
+            myModel = model;
+            myOffset = model.getRowCount();
+        }
+
+        @Override
+        protected Collection<? extends SearchResult> doInBackground()
+                throws Exception
+        {
+            return search(myPageQuery, myOffset);
+        }
+
+        @Override
+        protected void done() {
+            if (myPageWorker != this) {
+                return;
+            }
+            myPageWorker = null;
+            Collection<? extends SearchResult> results;
+            try {
+                results = get();
+            }
+            catch (InterruptedException | ExecutionException e) {
+                Logger.getLogger(SearchPanel.class.getName()).log(Level.INFO,
+                        null, e);
+                hasMoreResults = false;
+                return;
+            }
+            myModel.addResults(results);
+            hasMoreResults = results.size() == PAGE_SIZE;
+            loadNextPage();
+        }
+
+        private final SearchQuery myPageQuery;
+
+        private final AddonsModel myModel;
+
+        private final int myOffset;
     }
 
 }
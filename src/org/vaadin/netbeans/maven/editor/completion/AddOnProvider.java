@@ -28,10 +28,11 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
-import org.openide.util.RequestProcessor;
 import org.vaadin.netbeans.customizer.RemoteDataAccessStrategy;
 import org.vaadin.netbeans.customizer.VaadinConfiguration;
 import org.vaadin.netbeans.maven.editor.completion.SourceClass.SourceType;
+import org.vaadin.netbeans.utils.Scheduler;
+import org.vaadin.netbeans.utils.Scheduler.Lane;
 
 /**
  * @author denis
@@ -48,9 +49,6 @@ public final class AddOnProvider {
 
         isUpdating = new AtomicBoolean(false);
 
-        myRequestProcessor =
-                new RequestProcessor(AddOnProvider.class.getName(), 2);
-
         VaadinConfiguration config = VaadinConfiguration.getInstance();
         config.addPropertyChangeListener(new PropertyChangeListenerImpl());
 
@@ -63,14 +61,15 @@ public final class AddOnProvider {
         return INSTANCE;
     }
 
-    public Collection<? extends SearchResult> searchAddons( SearchQuery query )
+    public Collection<? extends SearchResult> searchAddons( SearchQuery query,
+            int offset, int limit )
     {
         SearchStrategy strategy = getSearchStrategy();
         if (strategy == null) {
             return Collections.emptyList();
         }
         checkUpdate();
-        return strategy.searchAddons(query);
+        return strategy.searchAddons(query, offset, limit);
     }
 
     public AddOn getAddOn( SearchResult result ) {
@@ -85,14 +84,14 @@ public final class AddOnProvider {
     }
 
     Collection<? extends AddOnClass> searchClasses( String prefix,
-            SourceType type )
+            SourceType type, int offset, int limit )
     {
         SearchStrategy strategy = getSearchStrategy();
         if (strategy == null) {
             return Collections.emptyList();
         }
         checkUpdate();
-        return strategy.searchClasses(prefix, type);
+        return strategy.searchClasses(prefix, type, offset, limit);
     }
 
     AddOnDoc getDoc( AddOnClass clazz ) {
@@ -166,7 +165,7 @@ public final class AddOnProvider {
 
     private void doUpdateDirectoryInfo( int delay, final CountDownLatch latch )
     {
-        myRequestProcessor.post(new Runnable() {
+        Scheduler.getInstance().create(Lane.NETWORK, new Runnable() {
 
             @Override
             public void run() {
@@ -175,7 +174,7 @@ public final class AddOnProvider {
                 VaadinConfiguration.getInstance().setLastDirectoryUpdate(
                         new Date());
             }
-        }, delay);
+        }).schedule(delay);
     }
 
     private LuceneSearchStrategy getLuceneSearchStraregy() {
@@ -191,7 +190,7 @@ public final class AddOnProvider {
             isUpdating.set(false);
             return;
         }
-        myRequestProcessor.post(new Runnable() {
+        Scheduler.getInstance().create(Lane.NETWORK, new Runnable() {
 
             @Override
             public void run() {
@@ -203,11 +202,11 @@ public final class AddOnProvider {
                 }
             }
 
-        }, delay);
+        }).schedule(delay);
     }
 
     private void reindex( boolean updateIndex, CountDownLatch latch ) {
-        assert myRequestProcessor.isRequestProcessorThread();
+        assert Scheduler.getInstance().isLaneThread(Lane.NETWORK);
 
         AddOnParser parser = new AddOnParser();
         if (updateIndex) {
@@ -269,7 +268,6 @@ public final class AddOnProvider {
 
     private final DirectoryRestClient myRest;
 
-    private final RequestProcessor myRequestProcessor;
 
     private final AtomicBoolean isUpdating;
 
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.maven.editor.completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.vaadin.netbeans.maven.editor.completion.AbstractAddOn.License;
+
+/**
+ * Immutable in-memory add-on info records of one index generation.
+ *
+ * Records are keyed by the stable add-on id, the add-on name is mapped to the
+ * id for lookups of results which don't carry the id. Add-on details are
+ * built from the records without querying the index.
+ *
+ * @author denis
+ */
+final class AddOnRecords {
+
+    private AddOnRecords( Map<String, Record> records, Map<String, String> ids )
+    {
+        myRecords = records;
+        myIds = ids;
+    }
+
+    /**
+     * @return record of the add-on with {@code id}, {@code null} if there is
+     *         no such add-on
+     */
+    Record get( String id ) {
+        return id == null ? null : myRecords.get(id);
+    }
+
+    /**
+     * @return record of the add-on with {@code name}, {@code null} if there
+     *         is no such add-on
+     */
+    Record getByName( String name ) {
+        return get(myIds.get(name));
+    }
+
+    int size() {
+        return myRecords.size();
+    }
+
+    static final class Record {
+
+        Record( String name, String groupId, String artifactId,
+                String version, String description, String maturity,
+                String rating, String url, String lastUpdate )
+        {
+            myName = name;
+            myGroupId = groupId;
+            myArtifactId = artifactId;
+            myVersion = version;
+            myDescription = description;
+            myMaturity = maturity;
+            myRating = rating;
+            myUrl = url;
+            myLastUpdate = lastUpdate;
+            myLicenses = Collections.emptyList();
+        }
+
+        private Record( Record record, List<License> licenses ) {
+            myName = record.myName;
+            myGroupId = record.myGroupId;
+            myArtifactId = record.myArtifactId;
+            myVersion = record.myVersion;
+            myDescription = record.myDescription;
+            myMaturity = record.myMaturity;
+            myRating = record.myRating;
+            myUrl = record.myUrl;
+            myLastUpdate = record.myLastUpdate;
+            myLicenses = licenses;
+        }
+
+        String getName() {
+            return myName;
+        }
+
+        String getGroupId() {
+            return myGroupId;
+        }
+
+        String getArtifactId() {
+            return myArtifactId;
+        }
+
+        String getVersion() {
+            return myVersion;
+        }
+
+        String getDescription() {
+            return myDescription;
+        }
+
+        String getMaturity() {
+            return myMaturity;
+        }
+
+        String getRating() {
+            return myRating;
+        }
+
+        String getUrl() {
+            return myUrl;
+        }
+
+        String getLastUpdate() {
+            return myLastUpdate;
+        }
+
+        /**
+         * @return licenses with Maven coordinates which default to the add-on
+         *         ones
+         */
+        List<License> getLicenses() {
+            return myLicenses;
+        }
+
+        private final String myName;
+
+        private final String myGroupId;
+
+        private final String myArtifactId;
+
+        private final String myVersion;
+
+        private final String myDescription;
+
+        private final String myMaturity;
+
+        private final String myRating;
+
+        private final String myUrl;
+
+        private final String myLastUpdate;
+
+        private final List<License> myLicenses;
+    }
+
+    static final class Builder {
+
+        Builder() {
+            myRecords = new HashMap<>();
+            myLicenses = new HashMap<>();
+        }
+
+        void addInfo( String id, Record record ) {
+            if (id != null) {
+                myRecords.put(id, record);
+            }
+        }
+
+        void addLicense( String id, License license ) {
+            if (id == null) {
+                return;
+            }
+            List<License> licenses = myLicenses.get(id);
+            if (licenses == null) {
+                licenses = new ArrayList<>(1);
+                myLicenses.put(id, licenses);
+            }
+            licenses.add(license);
+        }
+
+        AddOnRecords build() {
+            Map<String, Record> records = new HashMap<>();
+            Map<String, String> ids = new HashMap<>();
+            for (Entry<String, Record> entry : myRecords.entrySet()) {
+                Record record = entry.getValue();
+                List<License> licenses = myLicenses.get(entry.getKey());
+                if (licenses != null) {
+                    record =
+                            new Record(record,
+                                    Collections.unmodifiableList(fillLicenses(
+                                            licenses, record)));
+                }
+                records.put(entry.getKey(), record);
+                if (record.getName() != null) {
+                    ids.put(record.getName(), entry.getKey());
+                }
+            }
+            return new AddOnRecords(records, ids);
+        }
+
+        private List<License> fillLicenses( List<License> licenses,
+                Record record )
+        {
+            List<License> result = new ArrayList<>(licenses.size());
+            for (License license : licenses) {
+                result.add(new License(license.isFree(), license.getName(),
+                        license.getUrl(),
+                        license.getGroupId() == null ? record.getGroupId()
+                                : license.getGroupId(),
+                        license.getArtifactId() == null ? record
+                                .getArtifactId() : license.getArtifactId(),
+                        license.getVersion() == null ? record.getVersion()
+                                : license.getVersion()));
+            }
+            return result;
+        }
+
+        private final Map<String, Record> myRecords;
+
+        private final Map<String, List<License>> myLicenses;
+    }
+
+    private final Map<String, Record> myRecords;
+
+    private final Map<String, String> myIds;
+}
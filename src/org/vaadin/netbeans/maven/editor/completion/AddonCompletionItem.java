@@ -48,11 +48,12 @@ import org.netbeans.spi.editor.completion.support.CompletionUtilities;
 import org.openide.filesystems.FileObject;
 import org.openide.util.ImageUtilities;
 import org.openide.util.NbBundle;
-import org.openide.util.RequestProcessor;
 import org.vaadin.netbeans.maven.directory.AbstractLicenseChooser;
 import org.vaadin.netbeans.maven.editor.completion.AbstractAddOn.License;
 import org.vaadin.netbeans.maven.editor.completion.SourceClass.SourceType;
 import org.vaadin.netbeans.utils.POMUtils;
+import org.vaadin.netbeans.utils.Scheduler;
+import org.vaadin.netbeans.utils.Scheduler.Lane;
 
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ImportTree;
@@ -76,9 +77,6 @@ class AddonCompletionItem extends AbstractLicenseChooser implements
 
     private static ImageIcon ICON = createIcon();
 
-    private static final RequestProcessor REQUEST_PROCESSOR =
-            new RequestProcessor(AddonCompletionItem.class);
-
     AddonCompletionItem( int offset, AddOnClass clazz ) {
         myClass = clazz;
         myOffset = offset;
@@ -193,7 +191,7 @@ class AddonCompletionItem extends AbstractLicenseChooser implements
             return false;
         }
 
-        REQUEST_PROCESSOR.post(new Runnable() {
+        Scheduler.getInstance().post(Lane.UI, null, new Runnable() {
 
             @Override
             public void run() {
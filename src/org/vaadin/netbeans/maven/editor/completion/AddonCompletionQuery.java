@@ -46,7 +46,6 @@ import org.openide.filesystems.FileUtil;
 import org.vaadin.netbeans.VaadinSupport;
 import org.vaadin.netbeans.customizer.VaadinConfiguration;
 import org.vaadin.netbeans.maven.editor.completion.SourceClass.SourceType;
-import org.vaadin.netbeans.model.ModelOperation;
 import org.vaadin.netbeans.model.VaadinModel;
 import org.vaadin.netbeans.utils.JavaUtils;
 import org.vaadin.netbeans.utils.XmlUtils;
@@ -64,6 +63,12 @@ class AddonCompletionQuery extends AsyncCompletionQuery implements
     private static final Logger LOG = Logger
             .getLogger(AddonCompletionQuery.class.getName());
 
+    /*
+     * Only the best matches are shown: the list is narrowed down on each
+     * typed character anyway.
+     */
+    private static final int MAX_ITEMS = 100;
+
     AddonCompletionQuery( int offset ) {
         myOffset = offset;
     }
@@ -120,34 +125,50 @@ class AddonCompletionQuery extends AsyncCompletionQuery implements
             if (myPrefix != null) {
                 VaadinSupport support =
                         AddOnCompletionProvider.getSupport(document);
-                Collection<? extends AddOnClass> classes =
-                        AddOnProvider.getInstance().searchClasses(myPrefix,
-                                type);
                 Set<String> addonsInClassPath = new HashSet<>();
                 List<AddonCompletionItem> addonItems = new LinkedList<>();
-                for (AddOnClass clazz : classes) {
-                    if (addonsInClassPath.contains(clazz.getAddOnName())) {
-                        continue;
-                    }
-                    if (isClassInClassPath(clazz, support)) {
-                        addonsInClassPath.add(clazz.getAddOnName());
-                        continue;
+                /*
+                 * Classes of add-ons which are already in the classpath are
+                 * filtered out, so pages are requested until there are
+                 * enough items or the index is exhausted.
+                 */
+                boolean hasMore = true;
+                int offset = 0;
+                while (hasMore && addonItems.size() < MAX_ITEMS) {
+                    Collection<? extends AddOnClass> classes =
+                            AddOnProvider.getInstance().searchClasses(
+                                    myPrefix, type, offset, MAX_ITEMS);
+                    offset += classes.size();
+                    hasMore = classes.size() == MAX_ITEMS;
+                    for (AddOnClass clazz : classes) {
+                        if (addonsInClassPath.contains(clazz.getAddOnName())) {
+                            continue;
+                        }
+                        if (isClassInClassPath(clazz, support)) {
+                            addonsInClassPath.add(clazz.getAddOnName());
+                            continue;
+                        }
+                        AddonCompletionItem item =
+                                new AddonCompletionItem(myTokenOffset, clazz);
+                        addonItems.add(item);
                     }
-                    AddonCompletionItem item =
-                            new AddonCompletionItem(myTokenOffset, clazz);
-                    addonItems.add(item);
-                }
-                for (Iterator<AddonCompletionItem> iterator =
-                        addonItems.iterator(); iterator.hasNext();)
-                {
-                    AddonCompletionItem next = iterator.next();
-                    if (addonsInClassPath.contains(next.getAddOnClass()
-                            .getAddOnName()))
+                    for (Iterator<AddonCompletionItem> iterator =
+                            addonItems.iterator(); iterator.hasNext();)
                     {
-                        iterator.remove();
-                    }
+                        AddonCompletionItem next = iterator.next();
+                        if (addonsInClassPath.contains(next.getAddOnClass()
+                                .getAddOnName()))
+                        {
+                            iterator.remove();
+                        }
 
+                    }
                 }
+                if (addonItems.size() > MAX_ITEMS) {
+                    addonItems = addonItems.subList(0, MAX_ITEMS);
+                    hasMore = true;
+                }
+                resultSet.setHasAdditionalItems(hasMore);
                 items.addAll(addonItems);
             }
 
@@ -190,35 +211,23 @@ class AddonCompletionQuery extends AsyncCompletionQuery implements
             }
         }
         VaadinSupport support = project.getLookup().lookup(VaadinSupport.class);
-        final List<FileObject> clientPkgs = new LinkedList<>();
-        try {
-            support.runModelOperation(new ModelOperation() {
-
-                @Override
-                public void run( VaadinModel model ) {
-                    FileObject gwtXml = model.getGwtXml();
-                    if (gwtXml == null) {
-                        return;
-                    }
-                    List<String> sourcePaths = model.getSourcePaths();
-                    for (String srcPath : sourcePaths) {
-                        try {
-                            FileObject clientPkg =
-                                    XmlUtils.getClientWidgetPackage(gwtXml,
-                                            srcPath, false);
-                            if (clientPkg != null) {
-                                clientPkgs.add(clientPkg);
-                            }
-                        }
-                        catch (IOException e) {
-                            LOG.log(Level.INFO, null, e);
-                        }
+        List<FileObject> clientPkgs = new LinkedList<>();
+        VaadinModel model = support.getModel();
+        FileObject gwtXml = model.getGwtXml();
+        if (gwtXml != null) {
+            for (String srcPath : model.getSourcePaths()) {
+                try {
+                    FileObject clientPkg =
+                            XmlUtils.getClientWidgetPackage(gwtXml, srcPath,
+                                    false);
+                    if (clientPkg != null) {
+                        clientPkgs.add(clientPkg);
                     }
                 }
-            });
-        }
-        catch (IOException e) {
-            LOG.log(Level.INFO, null, e);
+                catch (IOException e) {
+                    LOG.log(Level.INFO, null, e);
+                }
+            }
         }
         for (FileObject clientPkg : clientPkgs) {
             if (FileUtil.isParentOf(clientPkg, fileObject)) {
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.maven.editor.completion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.vaadin.netbeans.maven.editor.completion.SourceClass.SourceType;
+
+/**
+ * Immutable in-memory prefix index of add-on class names.
+ *
+ * Classes are kept in a table sorted by the lower case simple name, strings
+ * are shared between entries. Each source type has a postings list: sorted
+ * array of the table positions with classes of that type. Prefix lookup is a
+ * binary search in the postings list followed by a sequential scan of the
+ * matching range.
+ *
+ * @author denis
+ */
+final class ClassNameIndex {
+
+    private ClassNameIndex( List<Entry> entries ) {
+        int size = entries.size();
+        myKeys = new String[size];
+        myNames = new String[size];
+        myFqns = new String[size];
+        myAddOnNames = new String[size];
+        myAddOnIds = new String[size];
+        Map<SourceType, int[]> postings = new EnumMap<>(SourceType.class);
+        Map<SourceType, Integer> counts = new EnumMap<>(SourceType.class);
+        for (SourceType type : SourceType.values()) {
+            postings.put(type, new int[size]);
+            counts.put(type, 0);
+        }
+        for (int i = 0; i < size; i++) {
+            Entry entry = entries.get(i);
+            myKeys[i] = entry.getKey();
+            myNames[i] = entry.getName();
+            myFqns[i] = entry.getFqn();
+            myAddOnNames[i] = entry.getAddOnName();
+            myAddOnIds[i] = entry.getAddOnId();
+            int count = counts.get(entry.getType());
+            postings.get(entry.getType())[count] = i;
+            counts.put(entry.getType(), count + 1);
+        }
+        myPostings = new EnumMap<>(SourceType.class);
+        for (SourceType type : SourceType.values()) {
+            myPostings.put(type,
+                    Arrays.copyOf(postings.get(type), counts.get(type)));
+        }
+    }
+
+    /**
+     * @return positions of the classes with {@code type} whose simple name
+     *         starts with {@code prefix}, at most {@code limit} positions
+     *         starting from {@code offset} match in the name order
+     */
+    int[] search( String prefix, SourceType type, boolean caseSensitive,
+            int offset, int limit )
+    {
+        int[] postings = myPostings.get(type);
+        String key = toKey(prefix);
+        int from = lowerBound(postings, key);
+        int[] result = new int[Math.min(limit, postings.length - from)];
+        int count = 0;
+        int skipped = 0;
+        for (int i = from; i < postings.length && count < result.length; i++) {
+            int position = postings[i];
+            if (!myKeys[position].startsWith(key)) {
+                break;
+            }
+            if (caseSensitive && !myNames[position].startsWith(prefix)) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            result[count] = position;
+            count++;
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    int size() {
+        return myNames.length;
+    }
+
+    String getName( int position ) {
+        return myNames[position];
+    }
+
+    String getQualifiedName( int position ) {
+        return myFqns[position];
+    }
+
+    String getAddOnName( int position ) {
+        return myAddOnNames[position];
+    }
+
+    String getAddOnId( int position ) {
+        return myAddOnIds[position];
+    }
+
+    /**
+     * @return index of the first postings entry which key is not less than
+     *         {@code key}
+     */
+    private int lowerBound( int[] postings, String key ) {
+        int low = 0;
+        int high = postings.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (myKeys[postings[mid]].compareTo(key) < 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String toKey( String name ) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    static final class Builder {
+
+        Builder() {
+            myEntries = new ArrayList<>();
+            myStrings = new HashMap<>();
+        }
+
+        void add( SourceType type, String name, String fqn, String addOnName,
+                String addOnId )
+        {
+            if (type == null || name == null) {
+                return;
+            }
+            myEntries.add(new Entry(type, share(toKey(name)), share(name),
+                    share(fqn), share(addOnName), share(addOnId)));
+        }
+
+        ClassNameIndex build() {
+            Collections.sort(myEntries, EntryComparator.INSTANCE);
+            return new ClassNameIndex(myEntries);
+        }
+
+        private String share( String string ) {
+            if (string == null) {
+                return null;
+            }
+            String shared = myStrings.get(string);
+            if (shared == null) {
+                myStrings.put(string, string);
+                shared = string;
+            }
+            return shared;
+        }
+
+        private final List<Entry> myEntries;
+
+        private final Map<String, String> myStrings;
+    }
+
+    private static final class Entry {
+
+        Entry( SourceType type, String key, String name, String fqn,
+                String addOnName, String addOnId )
+        {
+            myType = type;
+            myKey = key;
+            myName = name;
+            myFqn = fqn;
+            myAddOnName = addOnName;
+            myAddOnId = addOnId;
+        }
+
+        SourceType getType() {
+            return myType;
+        }
+
+        String getKey() {
+            return myKey;
+        }
+
+        String getName() {
+            return myName;
+        }
+
+        String getFqn() {
+            return myFqn;
+        }
+
+        String getAddOnName() {
+            return myAddOnName;
+        }
+
+        String getAddOnId() {
+            return myAddOnId;
+        }
+
+        private final SourceType myType;
+
+        private final String myKey;
+
+        private final String myName;
+
+        private final String myFqn;
+
+        private final String myAddOnName;
+
+        private final String myAddOnId;
+    }
+
+    private static final class EntryComparator implements Comparator<Entry> {
+
+        static final EntryComparator INSTANCE = new EntryComparator();
+
+        @Override
+        public int compare( Entry entry1, Entry entry2 ) {
+            int result = entry1.getKey().compareTo(entry2.getKey());
+            if (result == 0) {
+                result = entry1.getName().compareTo(entry2.getName());
+            }
+            return result;
+        }
+    }
+
+    private final String[] myKeys;
+
+    private final String[] myNames;
+
+    private final String[] myFqns;
+
+    private final String[] myAddOnNames;
+
+    private final String[] myAddOnIds;
+
+    private final Map<SourceType, int[]> myPostings;
+}
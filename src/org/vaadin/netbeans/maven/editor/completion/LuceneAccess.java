@@ -18,7 +18,16 @@ package org.vaadin.netbeans.maven.editor.completion;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -39,20 +48,53 @@ import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Version;
 
 /**
+ * Base index access.
+ *
+ * Each index build creates a new generation: numbered subdirectory of the
+ * index directory. The generation becomes current only when it's completely
+ * built and committed, previous generations are removed after that.
+ *
+ * One searcher is shared by all queries. Its reader is reference counted: a
+ * query acquires the searcher and releases it once it's done, so when the
+ * index is rebuilt the searcher is swapped with a new one while queries which
+ * are in progress keep using the previous index generation. The previous
+ * reader is closed once the last of them releases it.
+ *
+ * Documents of an add-on share its stable id derived from the add-on content
+ * (see {@link #getAddOnId(AddOn)}), so the id of an add-on doesn't change
+ * between index builds. Add-ons which publish the same artifact get the add-on
+ * name appended to the id. Generations written with a different documents
+ * layout are not used: their commit is not marked with the current
+ * {@link #FORMAT_VERSION}.
+ *
  * @author denis
  */
 abstract class LuceneAccess {
 
+    private static final double RAM_BUFFER_SIZE = 48;
+
+    private static final String FORMAT_VERSION_KEY = "formatVersion"; // NOI18N
+
+    private static final String FORMAT_VERSION = "2"; // NOI18N
+
     LuceneAccess() {
         myLock = new ReentrantReadWriteLock();
-
+        myAnalyzer = new StandardAnalyzer(Version.LUCENE_35);
+        mySearcherLock = new Object();
     }
 
     protected abstract Logger getLogger();
 
     protected abstract File getIndexDir();
 
-    protected abstract Collection<Document> createDocument( AddOn addon, int id );
+    protected abstract Collection<Document> createDocument( AddOn addon,
+            String id );
+
+    /**
+     * @return id of the {@code addon} which doesn't depend on the add-ons
+     *         order
+     */
+    protected abstract String getAddOnId( AddOn addon );
 
     protected Fieldable createStoredField( String key, String value ) {
         return new StoredField(key, value);
@@ -91,34 +133,106 @@ abstract class LuceneAccess {
         return document.get(name);
     }
 
-    protected void doIndex( Collection<AddOn> addons ) {
+    /**
+     * Analyzer shared by indexing and queries.
+     */
+    protected Analyzer getAnalyzer() {
+        return myAnalyzer;
+    }
+
+    /**
+     * Returns searcher over the current index generation. Each acquired
+     * searcher has to be released via {@link #releaseSearcher(IndexSearcher)}
+     * .
+     *
+     * @return searcher or {@code null} if there is no index yet
+     */
+    protected IndexSearcher acquireSearcher() throws IOException {
+        synchronized (mySearcherLock) {
+            if (mySearcher == null) {
+                File generation = getGeneration();
+                if (generation == null) {
+                    return null;
+                }
+                mySearcher = openSearcher(generation);
+            }
+            mySearcher.getIndexReader().incRef();
+            return mySearcher;
+        }
+    }
+
+    protected void releaseSearcher( IndexSearcher searcher ) {
+        if (searcher != null) {
+            releaseReader(searcher.getIndexReader());
+        }
+    }
+
+    /**
+     * @return directory of the current index generation, {@code null} if
+     *         there is no complete index
+     */
+    protected File getGeneration() {
+        synchronized (mySearcherLock) {
+            if (myGeneration == null) {
+                myGeneration = findLastGeneration();
+            }
+            return myGeneration;
+        }
+    }
+
+    /**
+     * Builds the index from scratch in a new generation directory. The
+     * current generation is not touched so it's still available for queries.
+     * Documents are buffered in memory and committed once.
+     *
+     * @return directory of the built generation, {@code null} if the build
+     *         has failed
+     */
+    protected File buildIndex( Collection<AddOn> addons ) {
+        File generation = new File(getIndexDir(),
+                String.valueOf(getLastGenerationNumber() + 1));
+        if (!generation.mkdirs()) {
+            getLogger().log(Level.WARNING,
+                    "Unable to create index directory {0}", generation); // NOI18N
+            return null;
+        }
         Directory directory = null;
         IndexWriter writer = null;
-        Analyzer analyzer = null;
+        boolean success = false;
         try {
-            if (!getIndexDir().exists() && !getIndexDir().mkdirs()) {
-                getLogger().log(Level.WARNING,
-                        "Unable to create index directory"); // NOI18N
-                return;
-            }
-            analyzer = new StandardAnalyzer(Version.LUCENE_35);
-
-            directory = FSDirectory.open(getIndexDir());
+            directory = FSDirectory.open(generation);
             IndexWriterConfig conf =
-                    new IndexWriterConfig(Version.LUCENE_35, analyzer);
+                    new IndexWriterConfig(Version.LUCENE_35, getAnalyzer());
             conf.setOpenMode(OpenMode.CREATE);
+            conf.setRAMBufferSizeMB(RAM_BUFFER_SIZE);
             writer = new IndexWriter(directory, conf);
-            writer.deleteAll();
 
-            int i = 0;
+            Set<String> ids = new HashSet<>();
+            Set<String> collisions = new HashSet<>();
+            for (AddOn addon : addons) {
+                String id = getAddOnId(addon);
+                if (!ids.add(id)) {
+                    collisions.add(id);
+                }
+            }
             for (AddOn addon : addons) {
-                Collection<Document> docs = createDocument(addon, i);
+                String id = getAddOnId(addon);
+                if (collisions.contains(id)) {
+                    /*
+                     * The same artifact is published by several add-ons: all
+                     * of them get the name suffix, so the id doesn't depend on
+                     * the add-ons order.
+                     */
+                    id = id + ':' + addon.getName();
+                }
+                Collection<Document> docs = createDocument(addon, id);
                 for (Document document : docs) {
                     writer.addDocument(document);
                 }
-                writer.commit();
-                i++;
             }
+            writer.commit(Collections.singletonMap(FORMAT_VERSION_KEY,
+                    FORMAT_VERSION));
+            success = true;
         }
         catch (IOException e) {
             getLogger().log(Level.INFO, null, e);
@@ -140,46 +254,177 @@ abstract class LuceneAccess {
                     getLogger().log(Level.FINE, null, e);
                 }
             }
-            if (analyzer != null) {
-                analyzer.close();
-            }
         }
+        if (!success) {
+            delete(generation);
+            return null;
+        }
+        return generation;
     }
 
-    protected void closeReadIndex( IndexReader reader, IndexSearcher searcher,
-            Directory directory, Analyzer analyzer )
-    {
-        if (reader != null) {
+    /**
+     * Makes {@code generation} current and switches the shared searcher to
+     * it. Queries which are in progress keep using the previous generation.
+     */
+    protected void swapGeneration( File generation ) {
+        synchronized (mySearcherLock) {
+            IndexSearcher searcher = null;
             try {
-                reader.close();
+                searcher = openSearcher(generation);
             }
             catch (IOException e) {
-                getLogger().log(Level.FINE, null, e);
+                getLogger().log(Level.INFO, null, e);
+                return;
             }
+            if (mySearcher != null) {
+                releaseReader(mySearcher.getIndexReader());
+            }
+            mySearcher = searcher;
+            myGeneration = generation;
         }
-        if (searcher != null) {
-            try {
-                searcher.close();
+    }
+
+    /**
+     * Removes all index generations except the current one. Files of the
+     * previous generation could be still locked on some platforms by a query
+     * in progress, such leftovers are removed next time.
+     */
+    protected void removeStaleGenerations() {
+        File current = getGeneration();
+        File[] files = getIndexDir().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.equals(current)) {
+                delete(file);
             }
-            catch (IOException e) {
-                getLogger().log(Level.FINE, null, e);
+        }
+    }
+
+    private IndexSearcher openSearcher( File generation ) throws IOException {
+        return new IndexSearcher(IndexReader.open(FSDirectory
+                .open(generation)));
+    }
+
+    private File findLastGeneration() {
+        File[] files = getIndexDir().listFiles();
+        if (files == null) {
+            return null;
+        }
+        File result = null;
+        int last = -1;
+        for (File file : files) {
+            int number = getGenerationNumber(file);
+            if (number > last && isComplete(file)) {
+                last = number;
+                result = file;
             }
         }
-        if (directory != null) {
-            try {
-                directory.close();
+        return result;
+    }
+
+    private int getLastGenerationNumber() {
+        int last = 0;
+        File[] files = getIndexDir().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                last = Math.max(last, getGenerationNumber(file));
             }
-            catch (IOException e) {
-                getLogger().log(Level.FINE, null, e);
+        }
+        return last;
+    }
+
+    private boolean isComplete( File generation ) {
+        Directory directory = null;
+        try {
+            directory = FSDirectory.open(generation);
+            if (!IndexReader.indexExists(directory)) {
+                return false;
             }
+            Map<String, String> data = IndexReader.getCommitUserData(directory);
+            return FORMAT_VERSION.equals(data.get(FORMAT_VERSION_KEY));
         }
-        if (analyzer != null) {
-            analyzer.close();
+        catch (IOException e) {
+            getLogger().log(Level.FINE, null, e);
+            return false;
+        }
+        finally {
+            if (directory != null) {
+                try {
+                    directory.close();
+                }
+                catch (IOException e) {
+                    getLogger().log(Level.FINE, null, e);
+                }
+            }
+        }
+    }
+
+    private void delete( File file ) {
+        try {
+            if (!file.isDirectory()) {
+                Files.deleteIfExists(file.toPath());
+                return;
+            }
+            Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile( Path path,
+                        BasicFileAttributes attrs ) throws IOException
+                {
+                    Files.delete(path);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory( Path dir,
+                        IOException e ) throws IOException
+                {
+                    if (e != null) {
+                        throw e;
+                    }
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (IOException e) {
+            getLogger().log(Level.FINE, null, e);
+        }
+    }
+
+    private void releaseReader( IndexReader reader ) {
+        try {
+            reader.decRef();
+        }
+        catch (IOException e) {
+            getLogger().log(Level.FINE, null, e);
+        }
+    }
+
+    private static int getGenerationNumber( File file ) {
+        if (!file.isDirectory()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(file.getName());
+        }
+        catch (NumberFormatException ignore) {
+            return -1;
         }
     }
 
     private ReentrantReadWriteLock myLock;
 
+    private final Analyzer myAnalyzer;
+
+    private final Object mySearcherLock;
+
+    private IndexSearcher mySearcher;
+
+    private File myGeneration;
+
     private static class StoredField extends AbstractField {
 
         StoredField( String name, String value ) {
@@ -20,6 +20,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.logging.Level;
 
 import org.apache.lucene.document.Document;
 import org.openide.modules.Places;
@@ -39,6 +40,7 @@ abstract class LuceneIndexing extends LuceneAccess {
         File vaadinFolder =
                 Places.getCacheSubdirectory(AbstractRetriever.VAADIN);
         myIndexDir = new File(vaadinFolder, ADD_ON_INDEX);
+        myBuildLock = new Object();
     }
 
     @Override
@@ -47,7 +49,7 @@ abstract class LuceneIndexing extends LuceneAccess {
     }
 
     @Override
-    protected Collection<Document> createDocument( AddOn addon, int id ) {
+    protected Collection<Document> createDocument( AddOn addon, String id ) {
         List<Document> result = new LinkedList<>();
 
         List<SourceClass> classes = addon.getClasses();
@@ -92,26 +94,71 @@ abstract class LuceneIndexing extends LuceneAccess {
         return result;
     }
 
-    protected int getSessionSeq() {
-        return mySessionSeq;
+    /**
+     * Add-on id is Maven coordinates {@code groupId:artifactId} of the
+     * add-on. Coordinates defined by the first license which has them are
+     * used if the add-on itself doesn't define them, the add-on name is used
+     * if there are no coordinates at all.
+     */
+    @Override
+    protected String getAddOnId( AddOn addon ) {
+        String groupId = addon.getGroupId();
+        String artifactId = addon.getArtifactId();
+        for (License license : addon.getLicenses()) {
+            if (groupId != null && artifactId != null) {
+                break;
+            }
+            if (groupId == null) {
+                groupId = license.getGroupId();
+            }
+            if (artifactId == null) {
+                artifactId = license.getArtifactId();
+            }
+        }
+        if (groupId == null || artifactId == null) {
+            return addon.getName();
+        }
+        return groupId + ':' + artifactId;
     }
 
+    /**
+     * Builds a new index generation aside while the current one is used for
+     * queries, then swaps them.
+     */
     void index( Collection<AddOn> addons ) {
-        getLock().writeLock().lock();
-        try {
-            nextSessionSeq();
-            doIndex(addons);
-        }
-        finally {
-            getLock().writeLock().unlock();
+        synchronized (myBuildLock) {
+            long start = System.currentTimeMillis();
+            File generation = buildIndex(addons);
+            if (generation == null) {
+                return;
+            }
+            getLock().writeLock().lock();
+            try {
+                swapGeneration(generation);
+            }
+            finally {
+                getLock().writeLock().unlock();
+            }
+            removeStaleGenerations();
+            indexChanged();
+            getLogger().log(Level.FINE,
+                    "{0} add-ons are indexed in {1} ms", // NOI18N
+                    new Object[] { addons.size(),
+                            System.currentTimeMillis() - start });
         }
     }
 
+    /**
+     * Called when a new index generation has been built and swapped in.
+     */
+    protected void indexChanged() {
+    }
+
     boolean isInitialized() {
-        return myIndexDir.exists();
+        return getGeneration() != null;
     }
 
-    private Document createInfoDocument( AddOn addon, int id ) {
+    private Document createInfoDocument( AddOn addon, String id ) {
         Document doc = new Document();
 
         String artifactId = addon.getArtifactId();
@@ -124,10 +171,7 @@ abstract class LuceneIndexing extends LuceneAccess {
         String lastUpdate = addon.getLastUpdate();
 
         add(doc, createIndexedField(QuerySupport.NAME, addon.getName()));
-        add(doc,
-                createIndexedField(QuerySupport.NAME_HASH,
-                        QuerySupport.getHash(addon.getName()), false));
-        add(doc, createIndexedField(QuerySupport.ID, String.valueOf(id)));
+        add(doc, createIndexedField(QuerySupport.ID, id));
         add(doc, createStoredField(QuerySupport.ARTIFACT_ID, artifactId));
         add(doc, createStoredField(QuerySupport.GROUP_ID, groupId));
         add(doc, createIndexedField(QuerySupport.DESCRIPTION, description));
@@ -145,7 +189,8 @@ abstract class LuceneIndexing extends LuceneAccess {
         return doc;
     }
 
-    private Document createLicenseDocument( AddOn addon, License license, int id )
+    private Document createLicenseDocument( AddOn addon, License license,
+            String id )
     {
         String name = license.getName();
         String url = license.getUrl();
@@ -156,7 +201,7 @@ abstract class LuceneIndexing extends LuceneAccess {
 
         Document doc = new Document();
 
-        add(doc, createIndexedField(QuerySupport.ID, String.valueOf(id), false));
+        add(doc, createIndexedField(QuerySupport.ID, id));
         add(doc, createStoredField(QuerySupport.NAME, name));
         add(doc, createStoredField(QuerySupport.URL, url));
         if (!add(doc, createStoredField(QuerySupport.ARTIFACT_ID, artifactId))
@@ -179,14 +224,15 @@ abstract class LuceneIndexing extends LuceneAccess {
         return doc;
     }
 
-    private Document createClassDocument( AddOn addon, SourceClass clazz, int id )
+    private Document createClassDocument( AddOn addon, SourceClass clazz,
+            String id )
     {
         String name = clazz.getName();
         String fqn = clazz.getQualifiedName();
         SourceType type = clazz.getType();
         Document doc = new Document();
 
-        add(doc, createIndexedField(QuerySupport.ID, String.valueOf(id)));
+        add(doc, createIndexedField(QuerySupport.ID, id));
         add(doc, createStoredField(QuerySupport.NAME, addon.getName()));
         add(doc, createIndexedField(QuerySupport.CLASS_NAME, name));
         add(doc, createIndexedField(QuerySupport.CLASS_FQN, fqn));
@@ -199,14 +245,8 @@ abstract class LuceneIndexing extends LuceneAccess {
         return doc;
     }
 
-    private int nextSessionSeq() {
-        assert getLock().isWriteLockedByCurrentThread();
-        mySessionSeq++;
-        return mySessionSeq;
-    }
-
-    private int mySessionSeq;
-
     private final File myIndexDir;
 
+    private final Object myBuildLock;
+
 }
@@ -15,27 +15,27 @@
  */
 package org.vaadin.netbeans.maven.editor.completion;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.Version;
 import org.vaadin.netbeans.maven.editor.completion.AbstractAddOn.Builder;
 import org.vaadin.netbeans.maven.editor.completion.AbstractAddOn.License;
 import org.vaadin.netbeans.maven.editor.completion.SourceClass.SourceType;
@@ -48,18 +48,45 @@ class LuceneSearchStrategy extends LuceneIndexing implements SearchStrategy {
     private static final Logger LOG = Logger
             .getLogger(LuceneSearchStrategy.class.getName());
 
+    private static final FieldSelector SEARCH_RESULT_FIELDS =
+            new MapFieldSelector(new String[] { QuerySupport.NAME,
+                    QuerySupport.RATING, QuerySupport.LAST_UPDATE,
+                    QuerySupport.ID });
+
+    private static final FieldSelector CLASS_NAME_INDEX_FIELDS =
+            new MapFieldSelector(new String[] { QuerySupport.CLASS_NAME,
+                    QuerySupport.CLASS_FQN, QuerySupport.NAME,
+                    QuerySupport.ID, QuerySupport.SOURCE_TYPE });
+
+    private static final FieldSelector INFO_RECORD_FIELDS =
+            new MapFieldSelector(new String[] { QuerySupport.DOC_TYPE,
+                    QuerySupport.ID, QuerySupport.NAME,
+                    QuerySupport.GROUP_ID, QuerySupport.ARTIFACT_ID,
+                    QuerySupport.VERSION, QuerySupport.DESCRIPTION,
+                    QuerySupport.MATURITY, QuerySupport.RATING,
+                    QuerySupport.URL, QuerySupport.LAST_UPDATE,
+                    QuerySupport.FREE });
+
     LuceneSearchStrategy() {
         myQuerySupport = new QuerySupport();
+        myClassesLatency = new Latency();
+        myMemoryIndexLock = new Object();
     }
 
     @Override
     public Collection<? extends AddOnClass> searchClasses( String prefix,
-            SourceType type )
+            SourceType type, int offset, int limit )
     {
         getLock().readLock().lock();
         try {
             if (isInitialized()) {
-                return doSearchClasses(prefix, type, null);
+                long start = System.nanoTime();
+                try {
+                    return doSearchClassNames(prefix, type, offset, limit);
+                }
+                finally {
+                    myClassesLatency.add(System.nanoTime() - start);
+                }
             }
             else {
                 return Collections.emptyList();
@@ -87,12 +114,13 @@ class LuceneSearchStrategy extends LuceneIndexing implements SearchStrategy {
     }
 
     @Override
-    public Collection<? extends SearchResult> searchAddons( SearchQuery query )
+    public Collection<? extends SearchResult> searchAddons( SearchQuery query,
+            int offset, int limit )
     {
         getLock().readLock().lock();
         try {
             if (isInitialized()) {
-                return doSearchAddons(query);
+                return doSearchAddons(query, offset, limit);
             }
             else {
                 return Collections.emptyList();
@@ -124,120 +152,239 @@ class LuceneSearchStrategy extends LuceneIndexing implements SearchStrategy {
         return LOG;
     }
 
-    private Collection<? extends SearchResult> doSearchAddons( SearchQuery query )
-    {
-        IndexReader reader = null;
+    /**
+     * Builds class names index and add-on records for the new generation
+     * right away so the first request doesn't pay for it.
+     */
+    @Override
+    protected void indexChanged() {
+        getLock().readLock().lock();
         IndexSearcher searcher = null;
-        Directory directory = null;
-        Analyzer analyzer = null;
         try {
-            analyzer = new StandardAnalyzer(Version.LUCENE_35);
-            directory = FSDirectory.open(getIndexDir());
-            reader = IndexReader.open(directory);
-            searcher = new IndexSearcher(reader);
-
-            Query searchQuery =
-                    myQuerySupport.createSearchInfoQuery(query, analyzer);
-            return doSearchAddons(searchQuery, analyzer, reader, searcher);
+            searcher = acquireSearcher();
+            if (searcher != null) {
+                loadMemoryIndex(searcher);
+            }
         }
-        catch (ParseException e) {
+        catch (IOException e) {
             getLogger().log(Level.FINE, null, e);
         }
+        finally {
+            releaseSearcher(searcher);
+            getLock().readLock().unlock();
+        }
+    }
+
+    /**
+     * Class name completion is served by the in-memory class names index,
+     * Lucene index is not queried.
+     */
+    private Collection<LuceneAddOnClass> doSearchClassNames( String prefix,
+            SourceType type, int offset, int limit )
+    {
+        IndexSearcher searcher = null;
+        try {
+            searcher = acquireSearcher();
+            if (searcher == null) {
+                return Collections.emptyList();
+            }
+            ClassNameIndex index = getClassNameIndex(searcher);
+            int[] positions = index.search(prefix, type, false, offset, limit);
+            List<LuceneAddOnClass> classes = new ArrayList<>(positions.length);
+            for (int position : positions) {
+                classes.add(new LuceneAddOnClass(type, index.getName(position),
+                        index.getQualifiedName(position), index
+                                .getAddOnName(position), index
+                                .getAddOnId(position)));
+            }
+            return classes;
+        }
         catch (IOException e) {
             getLogger().log(Level.FINE, null, e);
         }
         finally {
-            closeReadIndex(reader, searcher, directory, analyzer);
+            releaseSearcher(searcher);
         }
         return Collections.emptyList();
     }
 
-    private Collection<? extends SearchResult> doSearchAddons(
-            Query searchQuery, Analyzer analyzer, IndexReader reader,
-            IndexSearcher searcher ) throws IOException
+    private ClassNameIndex getClassNameIndex( IndexSearcher searcher )
+            throws IOException
     {
-        List<LuceneSearchResult> result = new LinkedList<>();
+        synchronized (myMemoryIndexLock) {
+            loadMemoryIndex(searcher);
+            return myClassNames;
+        }
+    }
 
-        ScoreDoc[] hits =
-                searcher.search(searchQuery, Integer.MAX_VALUE).scoreDocs;
-        for (int i = 0; i < hits.length; i++) {
-            Document hitDoc = searcher.doc(hits[i].doc);
-            String name = getField(QuerySupport.NAME, hitDoc);
-            String rating = getField(QuerySupport.RATING, hitDoc);
-            String date = getField(QuerySupport.LAST_UPDATE, hitDoc);
-            String id = getField(QuerySupport.ID, hitDoc);
-            LuceneSearchResult res =
-                    new LuceneSearchResult(name, rating, date, id,
-                            getSessionSeq());
-            result.add(res);
+    private AddOnRecords getAddOnRecords( IndexSearcher searcher )
+            throws IOException
+    {
+        synchronized (myMemoryIndexLock) {
+            loadMemoryIndex(searcher);
+            return myRecords;
         }
-        return result;
     }
 
-    private AddOn doGetAddon( SearchResult result ) {
-        AddOn addOn = new AddOn(result.getName());
+    /**
+     * Builds class names index and add-on records of the current index
+     * generation unless they are already built.
+     */
+    private void loadMemoryIndex( IndexSearcher searcher ) throws IOException {
+        File generation = getGeneration();
+        synchronized (myMemoryIndexLock) {
+            if (myClassNames != null
+                    && generation.equals(myMemoryIndexGeneration))
+            {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            IndexReader reader = searcher.getIndexReader();
+            myClassNames = buildClassNameIndex(reader);
+            myRecords = buildAddOnRecords(reader);
+            myMemoryIndexGeneration = generation;
+            getLogger().log(Level.FINE,
+                    "Memory index of {0} classes and {1} add-ons is built in {2} ms", // NOI18N
+                    new Object[] { myClassNames.size(), myRecords.size(),
+                            System.currentTimeMillis() - start });
+        }
+    }
 
-        String id = getInfoId(result);
-        if (id == null) {
-            LOG.log(Level.WARNING, "Unable to find id for search result, name="//NOI18N
-                    + result.getName());
-            return null;
+    private ClassNameIndex buildClassNameIndex( IndexReader reader )
+            throws IOException
+    {
+        ClassNameIndex.Builder builder = new ClassNameIndex.Builder();
+        TermDocs docs =
+                reader.termDocs(new Term(QuerySupport.DOC_TYPE,
+                        QuerySupport.DocType.CLASS.toString()));
+        try {
+            while (docs.next()) {
+                Document doc =
+                        reader.document(docs.doc(), CLASS_NAME_INDEX_FIELDS);
+                String type = getField(QuerySupport.SOURCE_TYPE, doc);
+                builder.add(type == null ? null : SourceType.valueOf(type),
+                        getField(QuerySupport.CLASS_NAME, doc),
+                        getField(QuerySupport.CLASS_FQN, doc),
+                        getField(QuerySupport.NAME, doc),
+                        getField(QuerySupport.ID, doc));
+            }
+        }
+        finally {
+            docs.close();
         }
-        return doGetAddOnInfo(addOn, AddOn.class, id);
+        return builder.build();
     }
 
-    private String getInfoId( SearchResult result ) {
-        String id = null;
-        if (result instanceof LuceneSearchResult) {
-            LuceneSearchResult luceneResult = (LuceneSearchResult) result;
-            if (getSessionSeq() == luceneResult.getSessionId()) {
-                id = luceneResult.getId().toString();
+    private AddOnRecords buildAddOnRecords( IndexReader reader )
+            throws IOException
+    {
+        AddOnRecords.Builder builder = new AddOnRecords.Builder();
+        collectRecords(reader, QuerySupport.DocType.INFO, builder);
+        collectRecords(reader, QuerySupport.DocType.LICENSE, builder);
+        return builder.build();
+    }
+
+    private void collectRecords( IndexReader reader,
+            QuerySupport.DocType type, AddOnRecords.Builder builder )
+            throws IOException
+    {
+        TermDocs docs =
+                reader.termDocs(new Term(QuerySupport.DOC_TYPE,
+                        type.toString()));
+        try {
+            while (docs.next()) {
+                Document doc = reader.document(docs.doc(), INFO_RECORD_FIELDS);
+                String id = getField(QuerySupport.ID, doc);
+                if (type == QuerySupport.DocType.LICENSE) {
+                    builder.addLicense(id, buildLicense(doc));
+                }
+                else {
+                    builder.addInfo(id, new AddOnRecords.Record(getField(
+                            QuerySupport.NAME, doc), getField(
+                            QuerySupport.GROUP_ID, doc), getField(
+                            QuerySupport.ARTIFACT_ID, doc), getField(
+                            QuerySupport.VERSION, doc), getField(
+                            QuerySupport.DESCRIPTION, doc), getField(
+                            QuerySupport.MATURITY, doc), getField(
+                            QuerySupport.RATING, doc), getField(
+                            QuerySupport.URL, doc), getField(
+                            QuerySupport.LAST_UPDATE, doc)));
+                }
             }
         }
-        if (id == null) {
-            /*
-             * In rare case <code>result</code> could be created by other 
-             * strategy or based on different indexing session.
-             */
-            id = getInfoIdByName(result.getName());
+        finally {
+            docs.close();
         }
-        return id;
     }
 
-    private String getInfoIdByName( String name ) {
-        IndexReader reader = null;
+    private Collection<? extends SearchResult> doSearchAddons(
+            SearchQuery query, int offset, int limit )
+    {
         IndexSearcher searcher = null;
-        Directory directory = null;
-        String id = null;
         try {
-            directory = FSDirectory.open(getIndexDir());
-            reader = IndexReader.open(directory);
-            searcher = new IndexSearcher(reader);
-
-            ScoreDoc[] hits =
-                    searcher.search(myQuerySupport.createInfoQuery(name),
-                            Integer.MAX_VALUE).scoreDocs;
-            for (int i = 0; i < hits.length; i++) {
-                Document hitDoc = searcher.doc(hits[i].doc);
-                String docName = getField(QuerySupport.NAME, hitDoc);
-                if (name.equals(docName)) {
-                    id = getField(QuerySupport.ID, hitDoc);
-                    break;
-                }
+            searcher = acquireSearcher();
+            if (searcher == null) {
+                return Collections.emptyList();
             }
+
+            Query searchQuery =
+                    myQuerySupport.createSearchInfoQuery(query, getAnalyzer());
+            return doSearchAddons(searchQuery, searcher, offset, limit);
+        }
+        catch (ParseException e) {
+            getLogger().log(Level.FINE, null, e);
         }
         catch (IOException e) {
             getLogger().log(Level.FINE, null, e);
         }
         finally {
-            closeReadIndex(reader, searcher, directory, null);
+            releaseSearcher(searcher);
         }
-        return id;
+        return Collections.emptyList();
+    }
+
+    private Collection<? extends SearchResult> doSearchAddons(
+            Query searchQuery, IndexSearcher searcher, int offset, int limit )
+            throws IOException
+    {
+        ScoreDoc[] hits = searchPage(searcher, searchQuery, offset, limit);
+        List<LuceneSearchResult> result =
+                new ArrayList<>(Math.max(hits.length - offset, 0));
+        for (int i = offset; i < hits.length; i++) {
+            Document hitDoc = searcher.doc(hits[i].doc, SEARCH_RESULT_FIELDS);
+            String name = getField(QuerySupport.NAME, hitDoc);
+            String rating = getField(QuerySupport.RATING, hitDoc);
+            String date = getField(QuerySupport.LAST_UPDATE, hitDoc);
+            String id = getField(QuerySupport.ID, hitDoc);
+            LuceneSearchResult res =
+                    new LuceneSearchResult(name, rating, date, id);
+            result.add(res);
+        }
+        return result;
+    }
+
+    private AddOn doGetAddon( SearchResult result ) {
+        String id = null;
+        if (result instanceof LuceneSearchResult) {
+            id = ((LuceneSearchResult) result).getId();
+        }
+        AddOnRecords.Record record = getRecord(id, result.getName());
+        if (record == null) {
+            LOG.log(Level.WARNING, "Unable to find id for search result, name="//NOI18N
+                    + result.getName());
+            return null;
+        }
+        return buildAddOnInfo(new AddOn(result.getName()), AddOn.class,
+                record);
     }
 
     private AddOnDoc doGetDoc( AddOnClass clazz ) {
-        LuceneAddOnClass addOnClass = getLuceneAddOnClass(clazz);
-        if (addOnClass == null) {
+        String id = null;
+        if (clazz instanceof LuceneAddOnClass) {
+            id = ((LuceneAddOnClass) clazz).getId();
+        }
+        AddOnRecords.Record record = getRecord(id, clazz.getAddOnName());
+        if (record == null) {
             LOG.log(Level.WARNING,
                     "Unable to find lucene data for addon class, addon name={0}, "
                             + "class name={1}", //NOI18N
@@ -247,151 +394,58 @@ class LuceneSearchStrategy extends LuceneIndexing implements SearchStrategy {
         }
 
         AddOnDoc result =
-                new AddOnDoc(addOnClass.getAddOnName(), addOnClass.getName(),
-                        addOnClass.getQualifiedName());
-        return doGetAddOnInfo(result, AddOnDoc.class, addOnClass.getId()
-                .toString());
-    }
-
-    private LuceneAddOnClass getLuceneAddOnClass( AddOnClass clazz ) {
-        LuceneAddOnClass addOnClass = null;
-        if (clazz instanceof LuceneAddOnClass) {
-            addOnClass = (LuceneAddOnClass) clazz;
-            if (getSessionSeq() != addOnClass.getSessionId()) {
-                addOnClass = null;
-            }
-        }
-
-        if (addOnClass == null) {
-            /*
-             *  In rare case <code>clazz</code> could be created by other 
-             *  strategy or based on different indexing session.
-             */
-            Collection<LuceneAddOnClass> classes =
-                    doSearchClasses(clazz.getName(), clazz.getType(),
-                            clazz.getQualifiedName());
-            for (LuceneAddOnClass luceneClass : classes) {
-                if (clazz.getAddOnName().equals(luceneClass.getAddOnName())
-                        && clazz.getName().equals(luceneClass.getName()))
-                {
-                    addOnClass = luceneClass;
-                    break;
-                }
-            }
-        }
-        return addOnClass;
+                new AddOnDoc(clazz.getAddOnName(), clazz.getName(),
+                        clazz.getQualifiedName());
+        return buildAddOnInfo(result, AddOnDoc.class, record);
     }
 
-    private <T extends AbstractAddOn> T doGetAddOnInfo( T addon,
-            Class<T> clazz, String id )
-    {
-        IndexReader reader = null;
+    /**
+     * Looks up the add-on record by {@code id}. Stable ids survive index
+     * rebuilds, the add-on name is used only if the object is created by
+     * other strategy or the add-on is not in the index anymore under the id.
+     */
+    private AddOnRecords.Record getRecord( String id, String name ) {
         IndexSearcher searcher = null;
-        Directory directory = null;
-        Analyzer analyzer = null;
         try {
-            analyzer = new StandardAnalyzer(Version.LUCENE_35);
-            directory = FSDirectory.open(getIndexDir());
-            reader = IndexReader.open(directory);
-            searcher = new IndexSearcher(reader);
-
-            Query query = myQuerySupport.createAddOnInfoQuery(id, analyzer);
-            addon = searchAddOnInfo(addon, clazz, searcher, query);
-        }
-        catch (ParseException e) {
-            getLogger().log(Level.FINE, null, e);
+            searcher = acquireSearcher();
+            if (searcher == null) {
+                return null;
+            }
+            AddOnRecords records = getAddOnRecords(searcher);
+            AddOnRecords.Record record = records.get(id);
+            if (record == null) {
+                record = records.getByName(name);
+            }
+            return record;
         }
         catch (IOException e) {
             getLogger().log(Level.FINE, null, e);
         }
         finally {
-            closeReadIndex(reader, searcher, directory, analyzer);
+            releaseSearcher(searcher);
         }
-        return addon;
+        return null;
     }
 
-    private <T extends AbstractAddOn> T searchAddOnInfo( T result,
-            Class<T> clazz, IndexSearcher searcher, Query query )
-            throws IOException, CorruptIndexException
+    private <T extends AbstractAddOn> T buildAddOnInfo( T result,
+            Class<T> clazz, AddOnRecords.Record record )
     {
-        ScoreDoc[] hits = searcher.search(query, Integer.MAX_VALUE).scoreDocs;
-        List<License> licenses = new ArrayList<>(hits.length);
-        boolean infoFound = false;
-        String artifactId = null;
-        String groupId = null;
-        String description = null;
-        String maturity = null;
-        String version = null;
-        String url = null;
-        String rating = null;
-        String lastUpdated = null;
-
-        for (int i = 0; i < hits.length; i++) {
-            Document hitDoc = searcher.doc(hits[i].doc);
-            String type = getField(QuerySupport.DOC_TYPE, hitDoc);
-            if (QuerySupport.DocType.LICENSE.toString().equals(type)) {
-                licenses.add(buildLicense(hitDoc));
-            }
-            else if (QuerySupport.DocType.INFO.toString().equals(type)) {
-                assert !infoFound;
-                infoFound = true;
-                artifactId = getField(QuerySupport.ARTIFACT_ID, hitDoc);
-                groupId = getField(QuerySupport.GROUP_ID, hitDoc);
-                description = getField(QuerySupport.DESCRIPTION, hitDoc);
-                maturity = getField(QuerySupport.MATURITY, hitDoc);
-                version = getField(QuerySupport.VERSION, hitDoc);
-                rating = getField(QuerySupport.RATING, hitDoc);
-                url = getField(QuerySupport.URL, hitDoc);
-                lastUpdated = getField(QuerySupport.LAST_UPDATE, hitDoc);
-            }
-        }
-        assert infoFound;
-
         if (clazz.equals(AddOn.class)) {
             AddOn.Builder builder = new AddOn.Builder();
-            result =
-                    clazz.cast(builder.build(
-                            AddOn.class.cast(result),
-                            groupId,
-                            artifactId,
-                            version,
-                            description,
-                            rating,
-                            url,
-                            maturity,
-                            lastUpdated,
-                            fillLicenses(licenses, groupId, artifactId, version)));
+            return clazz.cast(builder.build(AddOn.class.cast(result),
+                    record.getGroupId(), record.getArtifactId(),
+                    record.getVersion(), record.getDescription(),
+                    record.getRating(), record.getUrl(), record.getMaturity(),
+                    record.getLastUpdate(), record.getLicenses()));
         }
         else {
             Builder<T> builder = new Builder<>(clazz);
-            result =
-                    builder.build(
-                            result,
-                            groupId,
-                            artifactId,
-                            version,
-                            description,
-                            rating,
-                            url,
-                            maturity,
-                            fillLicenses(licenses, groupId, artifactId, version));
+            return builder.build(result, record.getGroupId(),
+                    record.getArtifactId(), record.getVersion(),
+                    record.getDescription(), record.getRating(),
+                    record.getUrl(), record.getMaturity(),
+                    record.getLicenses());
         }
-        return result;
-    }
-
-    private List<License> fillLicenses( List<License> licenses, String groupId,
-            String artifactId, String version )
-    {
-        List<License> result = new ArrayList<>(licenses.size());
-        for (License license : licenses) {
-            result.add(new License(license.isFree(), license.getName(), license
-                    .getUrl(), license.getGroupId() == null ? groupId : license
-                    .getGroupId(), license.getArtifactId() == null ? artifactId
-                    : license.getArtifactId(),
-                    license.getVersion() == null ? version : license
-                            .getVersion()));
-        }
-        return result;
     }
 
     private License buildLicense( Document doc ) {
@@ -400,96 +454,95 @@ class LuceneSearchStrategy extends LuceneIndexing implements SearchStrategy {
                         doc), getField(QuerySupport.ARTIFACT_ID, doc));
     }
 
-    private Collection<LuceneAddOnClass> doSearchClasses( String prefix,
-            SourceType type, String fqn )
+    /**
+     * Collects top {@code offset + limit} hits only instead of all matching
+     * documents. Callers load stored fields of the page hits only.
+     */
+    private ScoreDoc[] searchPage( IndexSearcher searcher, Query query,
+            int offset, int limit ) throws IOException
     {
-        Collection<LuceneAddOnClass> classes = new LinkedList<>();
-        IndexReader reader = null;
-        IndexSearcher searcher = null;
-        Directory directory = null;
-        Analyzer analyzer = null;
-        try {
-            analyzer = new StandardAnalyzer(Version.LUCENE_35);
-            directory = FSDirectory.open(getIndexDir());
-            reader = IndexReader.open(directory);
-            searcher = new IndexSearcher(reader);
-
-            Query query =
-                    myQuerySupport.createClassesQuery(prefix, type, fqn,
-                            analyzer);
-            ScoreDoc[] hits =
-                    searcher.search(query, Integer.MAX_VALUE).scoreDocs;
-            for (int i = 0; i < hits.length; i++) {
-                Document hitDoc = searcher.doc(hits[i].doc);
-                LuceneAddOnClass clazz =
-                        new LuceneAddOnClass(type, getField(
-                                QuerySupport.CLASS_NAME, hitDoc), getField(
-                                QuerySupport.CLASS_FQN, hitDoc), getField(
-                                QuerySupport.NAME, hitDoc), getField(
-                                QuerySupport.ID, hitDoc), getSessionSeq());
-                classes.add(clazz);
-            }
-        }
-        catch (ParseException e) {
-            // could happen in case bad prefix
-            getLogger().log(Level.INFO, null, e);
+        int count = (int) Math.min((long) offset + limit, searcher.maxDoc());
+        return searcher.search(query, Math.max(count, 1)).scoreDocs;
+    }
+
+    private QuerySupport myQuerySupport;
+
+    private final Object myMemoryIndexLock;
+
+    private ClassNameIndex myClassNames;
+
+    private AddOnRecords myRecords;
+
+    private File myMemoryIndexGeneration;
+
+    private final Latency myClassesLatency;
+
+    /**
+     * Completion query latency. The last {@link #SAMPLES} measurements are
+     * kept, p50 and p99 over them are logged on FINE level each time the
+     * samples buffer is filled.
+     */
+    private static class Latency {
+
+        private static final int SAMPLES = 256;
+
+        Latency() {
+            mySamples = new long[SAMPLES];
         }
-        catch (IOException e) {
-            getLogger().log(Level.FINE, null, e);
+
+        synchronized void add( long nanos ) {
+            mySamples[myCount % SAMPLES] = nanos;
+            myCount++;
+            if (myCount % SAMPLES == 0 && LOG.isLoggable(Level.FINE)) {
+                long[] sorted = mySamples.clone();
+                Arrays.sort(sorted);
+                LOG.log(Level.FINE,
+                        "Add-on classes completion latency: p50 {0} us, p99 {1} us", // NOI18N
+                        new Object[] { toMicros(sorted[SAMPLES / 2]),
+                                toMicros(sorted[SAMPLES * 99 / 100]) });
+            }
         }
-        finally {
-            closeReadIndex(reader, searcher, directory, analyzer);
+
+        private static long toMicros( long nanos ) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
         }
-        return classes;
-    }
 
-    private QuerySupport myQuerySupport;
+        private final long[] mySamples;
+
+        private long myCount;
+    }
 
     private static class LuceneAddOnClass extends AddOnClass {
 
         LuceneAddOnClass( SourceType type, String name, String fqn,
-                String addonName, Object id, int seq )
+                String addonName, String id )
         {
             super(type, name, fqn, addonName);
             myId = id;
-            mySessionId = seq;
         }
 
-        public Object getId() {
+        public String getId() {
             return myId;
         }
 
-        int getSessionId() {
-            return mySessionId;
-        }
-
-        private final Object myId;
-
-        private final int mySessionId;
+        private final String myId;
 
     }
 
     private static class LuceneSearchResult extends SearchResult {
 
         LuceneSearchResult( String name, String rating, String updateDate,
-                Object id, int seq )
+                String id )
         {
             super(name, rating, updateDate);
             myId = id;
-            mySessionId = seq;
         }
 
-        public Object getId() {
+        public String getId() {
             return myId;
         }
 
-        int getSessionId() {
-            return mySessionId;
-        }
-
-        private final Object myId;
-
-        private final int mySessionId;
+        private final String myId;
     }
 
 }
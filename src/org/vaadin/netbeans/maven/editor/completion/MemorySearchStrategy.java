@@ -38,22 +38,45 @@ public class MemorySearchStrategy implements SearchStrategy {
     }
 
     @Override
-    public Collection<AddOnClass> searchClasses( String prefix, SourceType type )
+    public Collection<AddOnClass> searchClasses( String prefix,
+            SourceType type, int offset, int limit )
     {
-        List<AddOnClass> result = new LinkedList<>();
-        for (AddOn addon : myAddons) {
-            List<SourceClass> classes = addon.getClasses();
-            for (SourceClass clazz : classes) {
-                String name = clazz.getName();
-                if (type.equals(clazz.getType()) && name.startsWith(prefix)) {
-                    AddOnClass cl =
-                            new AddOnClass(type, name,
-                                    clazz.getQualifiedName(), addon.getName());
-                    result.add(cl);
+        ClassNameIndex classNames = getClassNames();
+        int[] positions = classNames.search(prefix, type, true, offset, limit);
+        List<AddOnClass> result = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            result.add(new AddOnClass(type, classNames.getName(position),
+                    classNames.getQualifiedName(position), classNames
+                            .getAddOnName(position)));
+        }
+        return result;
+    }
+
+    /**
+     * The index is built on the first classes search: the strategy is
+     * usually replaced by the Lucene one before any completion is requested.
+     */
+    private ClassNameIndex getClassNames() {
+        ClassNameIndex classNames = myClassNames;
+        if (classNames == null) {
+            synchronized (this) {
+                classNames = myClassNames;
+                if (classNames == null) {
+                    ClassNameIndex.Builder builder =
+                            new ClassNameIndex.Builder();
+                    for (AddOn addon : myAddons) {
+                        for (SourceClass clazz : addon.getClasses()) {
+                            builder.add(clazz.getType(), clazz.getName(),
+                                    clazz.getQualifiedName(), addon.getName(),
+                                    null);
+                        }
+                    }
+                    classNames = builder.build();
+                    myClassNames = classNames;
                 }
             }
         }
-        return result;
+        return classNames;
     }
 
     @Override
@@ -75,7 +98,8 @@ public class MemorySearchStrategy implements SearchStrategy {
     }
 
     @Override
-    public Collection<? extends SearchResult> searchAddons( SearchQuery query )
+    public Collection<? extends SearchResult> searchAddons( SearchQuery query,
+            int offset, int limit )
     {
         List<String> tokens = new LinkedList<>();
         String textSearch = query.getTextSearch();
@@ -104,7 +128,7 @@ public class MemorySearchStrategy implements SearchStrategy {
             list.add(new SearchResult(addon.getName(), addon.getRating(), addon
                     .getLastUpdate()));
         }
-        return list;
+        return getPage(list, offset, limit);
     }
 
     @Override
@@ -118,6 +142,15 @@ public class MemorySearchStrategy implements SearchStrategy {
         return null;
     }
 
+    private static <T> List<T> getPage( List<T> list, int offset, int limit )
+    {
+        if (offset >= list.size()) {
+            return Collections.emptyList();
+        }
+        int end = (int) Math.min(list.size(), (long) offset + limit);
+        return new ArrayList<>(list.subList(offset, end));
+    }
+
     private boolean hasMaturity( Maturity maturity, AddOn addon ) {
         Maturity addonMaturity = addon.getMaturity();
         if (maturity.equals(addonMaturity)) {
@@ -224,4 +257,6 @@ public class MemorySearchStrategy implements SearchStrategy {
 
     private Collection<AddOn> myAddons;
 
+    private volatile ClassNameIndex myClassNames;
+
 }
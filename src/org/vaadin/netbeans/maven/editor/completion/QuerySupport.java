@@ -26,13 +26,11 @@ import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.util.Version;
 import org.vaadin.netbeans.maven.editor.completion.AbstractAddOn.Maturity;
 import org.vaadin.netbeans.maven.editor.completion.SearchQuery.Field;
-import org.vaadin.netbeans.maven.editor.completion.SourceClass.SourceType;
 
 /**
  * @author denis
@@ -73,8 +71,6 @@ class QuerySupport {
 
     static final String HAS_COMMERCIAL_LICENSE = "hasCommercialLicense"; // NOI18N 
 
-    static final String NAME_HASH = "nameHash";
-
     enum DocType {
         CLASS,
         LICENSE,
@@ -86,50 +82,6 @@ class QuerySupport {
         }
     }
 
-    Query createAddOnInfoQuery( String id, Analyzer analyzer )
-            throws ParseException
-    {
-        TermQuery infoQuery =
-                new TermQuery(new Term(DOC_TYPE, DocType.INFO.toString()));
-        TermQuery licenseQuery =
-                new TermQuery(new Term(DOC_TYPE, DocType.LICENSE.toString()));
-        BooleanQuery typeQuery = new BooleanQuery();
-        typeQuery.add(infoQuery, Occur.SHOULD);
-        typeQuery.add(licenseQuery, Occur.SHOULD);
-
-        TermQuery nameQuery = new TermQuery(new Term(ID, id));
-
-        BooleanQuery query = new BooleanQuery();
-        query.add(nameQuery, Occur.MUST);
-        query.add(typeQuery, Occur.MUST);
-
-        QueryParser parser = new QueryParser(Version.LUCENE_35, NAME, analyzer);
-        Query docQuery = parser.parse(query.toString());
-        return docQuery;
-    }
-
-    Query createClassesQuery( String prefix, SourceType type, String fqn,
-            Analyzer analyzer ) throws ParseException
-    {
-        Query prefixQuery = new PrefixQuery(new Term(CLASS_NAME, prefix));
-        Query typeQuery =
-                new TermQuery(new Term(DOC_TYPE, DocType.CLASS.toString()));
-        Query sourceType =
-                new TermQuery(new Term(SOURCE_TYPE, type.toString()));
-        BooleanQuery query = new BooleanQuery();
-        query.add(prefixQuery, Occur.MUST);
-        query.add(typeQuery, Occur.MUST);
-        query.add(sourceType, Occur.MUST);
-        if (fqn != null) {
-            query.add(new TermQuery(new Term(CLASS_FQN, fqn)), Occur.MUST);
-        }
-
-        QueryParser parser =
-                new QueryParser(Version.LUCENE_35, CLASS_NAME, analyzer);
-        Query serchQuery = parser.parse(query.toString());
-        return serchQuery;
-    }
-
     Query createSearchInfoQuery( SearchQuery searchQuery, Analyzer analyzer )
             throws ParseException
     {
@@ -157,17 +109,6 @@ class QuerySupport {
         return docQuery;
     }
 
-    Query createInfoQuery( String name ) {
-        TermQuery infoQuery =
-                new TermQuery(new Term(DOC_TYPE,
-                        QuerySupport.DocType.INFO.toString()));
-        TermQuery hashQuery = new TermQuery(new Term(NAME_HASH, getHash(name)));
-        BooleanQuery query = new BooleanQuery();
-        query.add(infoQuery, Occur.MUST);
-        query.add(hashQuery, Occur.MUST);
-        return query;
-    }
-
     private Query createLicenseQuery( SearchQuery searchQuery ) {
         Boolean isFree = searchQuery.isFree();
         if (isFree == null) {
@@ -284,9 +225,4 @@ class QuerySupport {
         }
         return result;
     }
-
-    static String getHash( String str ) {
-        String hash = String.valueOf(str.hashCode());
-        return hash.replace('-', '0');
-    }
 }
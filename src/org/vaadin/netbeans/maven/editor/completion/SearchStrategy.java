@@ -20,16 +20,20 @@ import java.util.Collection;
 import org.vaadin.netbeans.maven.editor.completion.SourceClass.SourceType;
 
 /**
+ * Search methods return one page of results: at most {@code limit} results
+ * starting from {@code offset} in the results order.
+ *
  * @author denis
  */
 public interface SearchStrategy {
 
     Collection<? extends AddOnClass> searchClasses( String prefix,
-            SourceType type );
+            SourceType type, int offset, int limit );
 
     AddOnDoc getDoc( AddOnClass clazz );
 
-    Collection<? extends SearchResult> searchAddons( SearchQuery query );
+    Collection<? extends SearchResult> searchAddons( SearchQuery query,
+            int offset, int limit );
 
     AddOn getAddOn( SearchResult result );
 
@@ -17,17 +17,14 @@ package org.vaadin.netbeans.maven.project;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.concurrent.ExecutorService;
 
 import javax.swing.SwingUtilities;
 
-import org.openide.util.RequestProcessor;
+import org.vaadin.netbeans.utils.Scheduler;
+import org.vaadin.netbeans.utils.Scheduler.Lane;
 
 abstract class AbstractActionListener implements ActionListener, Runnable {
 
-    private static final ExecutorService REQUEST_PROCESSOR =
-            new RequestProcessor(VaadinAction.class);
-
     @Override
     public void actionPerformed( ActionEvent e ) {
         if (SwingUtilities.isEventDispatchThread()) {
@@ -39,6 +36,6 @@ abstract class AbstractActionListener implements ActionListener, Runnable {
     }
 
     protected void runOutAwt() {
-        REQUEST_PROCESSOR.execute(this);
+        Scheduler.getInstance().post(Lane.UI, null, this);
     }
 }
@@ -20,6 +20,8 @@ import java.awt.event.ActionListener;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -31,10 +33,12 @@ import javax.swing.event.ChangeListener;
 import org.netbeans.api.project.FileOwnerQuery;
 import org.netbeans.api.project.Project;
 import org.netbeans.api.project.ProjectUtils;
+import org.netbeans.api.project.ui.OpenProjects;
 import org.netbeans.modules.maven.api.execute.RunConfig;
 import org.netbeans.modules.maven.api.execute.RunUtils;
 import org.openide.DialogDescriptor;
 import org.openide.DialogDisplayer;
+import org.openide.NotifyDescriptor;
 import org.openide.awt.DynamicMenuContent;
 import org.openide.execution.ExecutorTask;
 import org.openide.filesystems.FileObject;
@@ -179,6 +183,48 @@ public class VaadinAction extends AbstractAction implements ContextAwareAction {
         return item;
     }
 
+    @NbBundle.Messages({ "memoryReport=Memory Usage Report",
+            "memoryReportTitle=Vaadin Projects Memory Usage (Estimated)",
+            "memoryReportNote=Sizes are estimated from the number of cached "
+                    + "elements, they are not measured.",
+            "# {0} - project name", "# {1} - total size in KB",
+            "projectMemory={0}: ~{1} KB (estimated)",
+            "lowMemoryMode= (low memory mode)",
+            "# {0} - cache name", "# {1} - size in KB",
+            "cacheMemory=    {0}: ~{1} KB",
+            "noOpenProjects=There are no open projects" })
+    protected JMenuItem createMemoryReportItem() {
+        JMenuItem item = new JMenuItem(Bundle.memoryReport());
+        item.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed( ActionEvent e ) {
+                logUiUsage("UI_LogMemoryReportAction"); // NOI18N
+
+                StringBuilder report = new StringBuilder();
+                for (Project project : OpenProjects.getDefault()
+                        .getOpenProjects())
+                {
+                    appendReport(report, project, project.getLookup()
+                            .lookup(VaadinSupport.class));
+                }
+                if (report.length() == 0) {
+                    report.append(Bundle.noOpenProjects());
+                }
+                else {
+                    report.append('\n');
+                    report.append(Bundle.memoryReportNote());
+                }
+                NotifyDescriptor descriptor =
+                        new NotifyDescriptor.Message(report.toString(),
+                                NotifyDescriptor.INFORMATION_MESSAGE);
+                descriptor.setTitle(Bundle.memoryReportTitle());
+                DialogDisplayer.getDefault().notify(descriptor);
+            }
+        });
+        return item;
+    }
+
     public static Project getProject( Lookup lookup ) {
         if (lookup == null) {
             return null;
@@ -289,6 +335,37 @@ public class VaadinAction extends AbstractAction implements ContextAwareAction {
         private final Project myProject;
     }
 
+    /**
+     * Appends estimated sizes of the {@code project}: the size is 0 for
+     * projects without Vaadin support.
+     */
+    private static void appendReport( StringBuilder report, Project project,
+            VaadinSupport support )
+    {
+        Map<String, Long> sizes =
+                support == null ? Collections.<String, Long> emptyMap()
+                        : support.getRetainedSizes();
+        long total = 0;
+        for (Long size : sizes.values()) {
+            total += size;
+        }
+        report.append(Bundle.projectMemory(ProjectUtils
+                .getInformation(project).getDisplayName(), toKb(total)));
+        if (support != null && support.isLowMemoryMode()) {
+            report.append(Bundle.lowMemoryMode());
+        }
+        report.append('\n');
+        for (Entry<String, Long> entry : sizes.entrySet()) {
+            report.append(Bundle.cacheMemory(entry.getKey(),
+                    toKb(entry.getValue())));
+            report.append('\n');
+        }
+    }
+
+    private static long toKb( long bytes ) {
+        return (bytes + 1023) / 1024;
+    }
+
     private static class AddonHandler extends AbstractLicenseChooser {
 
         @Override
@@ -47,6 +47,7 @@ public class VaadinJarProjectAction extends VaadinAction implements Popup {
             }
 
             menu.add(createAddonsBrowserItem());
+            menu.add(createMemoryReportItem());
 
             menu.setEnabled(isEnabled());
             return menu;
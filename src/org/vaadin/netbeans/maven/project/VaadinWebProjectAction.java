@@ -87,6 +87,7 @@ public class VaadinWebProjectAction extends VaadinAction implements Popup {
              */
             menu.addSeparator();
             menu.add(createAddonsBrowserItem());
+            menu.add(createMemoryReportItem());
 
             menu.setEnabled(isEnabled());
             return menu;
@@ -30,8 +30,26 @@ public interface VaadinModel {
 
     FileObject getGwtXml();
 
+    /**
+     * @return all GWT module descriptors of the project in deterministic
+     *         order
+     */
+    List<FileObject> getGwtModules();
+
     GwtModel getGwtModel();
 
+    /**
+     * @return counter which is incremented each time the GWT model is
+     *         re-synced, released or reloaded, so any data derived from the
+     *         model is stale once the counter differs from the value it has
+     *         been computed with
+     */
+    long getGwtModelVersion();
+
+    /**
+     * @return source paths of the GWT module, empty list if the GWT model is
+     *         not available (yet)
+     */
     List<String> getSourcePaths();
 
 }
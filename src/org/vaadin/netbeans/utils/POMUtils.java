@@ -62,8 +62,6 @@ import org.openide.util.NbBundle;
 import org.openide.util.TaskListener;
 import org.vaadin.netbeans.VaadinSupport;
 import org.vaadin.netbeans.customizer.VaadinConfiguration;
-import org.vaadin.netbeans.model.ModelOperation;
-import org.vaadin.netbeans.model.VaadinModel;
 
 /**
  * @author denis
@@ -394,18 +392,8 @@ public final class POMUtils {
 
         VaadinSupport support = project.getLookup().lookup(VaadinSupport.class);
         if (support != null) {
-            final boolean[] hasGwtXml = new boolean[1];
             try {
-                support.runModelOperation(new ModelOperation() {
-
-                    @Override
-                    public void run( VaadinModel model ) {
-                        FileObject gwtXml = model.getGwtXml();
-                        hasGwtXml[0] = gwtXml != null;
-                    }
-                });
-
-                if (!hasGwtXml[0]) {
+                if (support.getModel().getGwtXml() == null) {
                     createGwtXml(support, project);
                 }
             }
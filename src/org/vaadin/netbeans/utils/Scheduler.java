@@ -0,0 +1,359 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.utils;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openide.util.RequestProcessor;
+
+/**
+ * Central scheduler for the plugin background work.
+ *
+ * The work is split into lanes so slow network requests don't delay project
+ * indexing and vice versa. Tasks posted into a lane are grouped by their owner
+ * (usually project) and owners are served in round-robin order, so one
+ * project can't occupy a lane. Tasks of one owner never run concurrently even
+ * if the lane has several threads. A pending task may be replaced by a newer
+ * task with the same key, pending tasks of an owner may be cancelled.
+ *
+ * Queue depth and latency of each lane are logged by the
+ * {@code org.vaadin.netbeans.utils.Scheduler} logger: a summary on FINE level
+ * and tasks which have waited too long on INFO level.
+ *
+ * @author denis
+ */
+public final class Scheduler {
+
+    private static final Logger LOG = Logger.getLogger(Scheduler.class
+            .getName());
+
+    private static final Scheduler INSTANCE = new Scheduler();
+
+    private static final long SLOW_WAIT = TimeUnit.SECONDS.toNanos(2);
+
+    private static final int REPORT_PERIOD = 100;
+
+    private static final Object NO_OWNER = new Object();
+
+    public enum Lane {
+        /**
+         * Project initialization, class index and file events processing
+         */
+        PROJECT(2),
+        /**
+         * Remote data (add-ons directory, Vaadin versions) refresh
+         */
+        NETWORK(2),
+        /**
+         * Work requested by user actions
+         */
+        UI(2);
+
+        private Lane( int throughput ) {
+            myThroughput = throughput;
+        }
+
+        int getThroughput() {
+            return myThroughput;
+        }
+
+        private final int myThroughput;
+    }
+
+    private Scheduler() {
+        myLanes = new EnumMap<>(Lane.class);
+        for (Lane lane : Lane.values()) {
+            myLanes.put(lane, new LaneQueue(lane));
+        }
+    }
+
+    public static Scheduler getInstance() {
+        return INSTANCE;
+    }
+
+    public void post( Lane lane, Object owner, Runnable task ) {
+        post(lane, owner, null, task);
+    }
+
+    /**
+     * Posts the {@code task} into the {@code lane}. Pending task of the same
+     * {@code owner} with equal {@code key} is stale and is dropped.
+     */
+    public void post( Lane lane, Object owner, Object key, Runnable task ) {
+        myLanes.get(lane).add(owner == null ? NO_OWNER : owner, key, task);
+    }
+
+    /**
+     * Drops all pending tasks of the {@code owner} in the {@code lane}.
+     * Running tasks are not affected.
+     */
+    public void cancel( Lane lane, Object owner ) {
+        myLanes.get(lane).cancel(owner == null ? NO_OWNER : owner);
+    }
+
+    /**
+     * Creates task which is its own owner.
+     * 
+     * @see #create(Lane, Object, Runnable)
+     */
+    public RequestProcessor.Task create( Lane lane, Runnable task ) {
+        return create(lane, task, task);
+    }
+
+    /**
+     * Creates task which could be scheduled (and re-scheduled) with a delay.
+     * Once the delay expires the task is posted into the {@code lane} on
+     * behalf of the {@code owner}, so it's a subject of owners round-robin and
+     * doesn't run concurrently with other tasks of the {@code owner}. Pending
+     * run of the task is cancelled along with other tasks of the owner.
+     */
+    public RequestProcessor.Task create( Lane lane, Object owner,
+            Runnable task )
+    {
+        return myLanes.get(lane).create(owner == null ? task : owner, task);
+    }
+
+    public boolean isLaneThread( Lane lane ) {
+        return myLanes.get(lane).getProcessor().isRequestProcessorThread();
+    }
+
+    private static final class Job {
+
+        Job( Object owner, Object key, Runnable task ) {
+            myOwner = owner;
+            myKey = key;
+            myTask = task;
+            mySubmitted = System.nanoTime();
+        }
+
+        Object getOwner() {
+            return myOwner;
+        }
+
+        Object getKey() {
+            return myKey;
+        }
+
+        Runnable getTask() {
+            return myTask;
+        }
+
+        long getSubmitted() {
+            return mySubmitted;
+        }
+
+        private final Object myOwner;
+
+        private final Object myKey;
+
+        private final Runnable myTask;
+
+        private final long mySubmitted;
+    }
+
+    private static final class LaneQueue implements Runnable {
+
+        LaneQueue( Lane lane ) {
+            myLane = lane;
+            myProcessor =
+                    new RequestProcessor(Scheduler.class.getName() + '.'
+                            + lane, lane.getThroughput());
+            myQueues = new LinkedHashMap<>();
+            myRunning = new HashSet<>();
+            myCompleted = new AtomicLong();
+            myStale = new AtomicLong();
+            myWait = new AtomicLong();
+            myMaxWait = new AtomicLong();
+            myRun = new AtomicLong();
+        }
+
+        @Override
+        public void run() {
+            Job job = poll();
+            if (job == null) {
+                return;
+            }
+            try {
+                execute(job.getTask(), System.nanoTime() - job.getSubmitted());
+            }
+            finally {
+                finished(job.getOwner());
+            }
+        }
+
+        synchronized void add( Object owner, Object key, Runnable task ) {
+            LinkedList<Job> queue = myQueues.get(owner);
+            if (queue == null) {
+                queue = new LinkedList<>();
+                myQueues.put(owner, queue);
+            }
+            if (key != null) {
+                for (Iterator<Job> iterator = queue.iterator(); iterator
+                        .hasNext();)
+                {
+                    if (key.equals(iterator.next().getKey())) {
+                        iterator.remove();
+                        myDepth--;
+                        myStale.incrementAndGet();
+                    }
+                }
+            }
+            queue.add(new Job(owner, key, task));
+            myDepth++;
+            myProcessor.post(this);
+        }
+
+        synchronized void cancel( Object owner ) {
+            LinkedList<Job> queue = myQueues.remove(owner);
+            if (queue != null) {
+                myDepth -= queue.size();
+                myStale.addAndGet(queue.size());
+            }
+        }
+
+        RequestProcessor.Task create( final Object owner, final Runnable task )
+        {
+            return myProcessor.create(new Runnable() {
+
+                @Override
+                public void run() {
+                    // the task itself is the key: a pending run is enough
+                    add(owner, task, task);
+                }
+            });
+        }
+
+        RequestProcessor getProcessor() {
+            return myProcessor;
+        }
+
+        private synchronized int getDepth() {
+            return myDepth;
+        }
+
+        private String getStatistics() {
+            long completed = myCompleted.get();
+            long divider = Math.max(completed, 1);
+            return myLane + ": queued " + getDepth() + ", completed " // NOI18N
+                    + completed + ", stale " + myStale.get() // NOI18N
+                    + ", average wait " + toMillis(myWait.get() / divider) // NOI18N
+                    + " ms, max wait " + toMillis(myMaxWait.get()) // NOI18N
+                    + " ms, average run " + toMillis(myRun.get() / divider) // NOI18N
+                    + " ms"; // NOI18N
+        }
+
+        /**
+         * Takes the first task of the first owner which has no running task
+         * and moves the owner to the end of the queue. Tasks without owner
+         * are not serialized.
+         */
+        private synchronized Job poll() {
+            for (Iterator<Entry<Object, LinkedList<Job>>> iterator = myQueues
+                    .entrySet().iterator(); iterator.hasNext();)
+            {
+                Entry<Object, LinkedList<Job>> entry = iterator.next();
+                Object owner = entry.getKey();
+                if (myRunning.contains(owner)) {
+                    continue;
+                }
+                iterator.remove();
+                LinkedList<Job> queue = entry.getValue();
+                Job job = queue.poll();
+                if (!queue.isEmpty()) {
+                    myQueues.put(owner, queue);
+                }
+                if (owner != NO_OWNER) {
+                    myRunning.add(owner);
+                }
+                myDepth--;
+                return job;
+            }
+            return null;
+        }
+
+        /**
+         * Releases the {@code owner}. Its pending tasks have been skipped by
+         * {@link #poll()} while the task was running, so the lane is notified
+         * once more.
+         */
+        private synchronized void finished( Object owner ) {
+            if (myRunning.remove(owner) && myQueues.containsKey(owner)) {
+                myProcessor.post(this);
+            }
+        }
+
+        private void execute( Runnable task, long wait ) {
+            if (wait > SLOW_WAIT) {
+                LOG.log(Level.INFO, "Task {0} has waited {1} ms in the lane {2}", // NOI18N
+                        new Object[] { task, toMillis(wait), myLane });
+            }
+            long start = System.nanoTime();
+            try {
+                task.run();
+            }
+            finally {
+                myRun.addAndGet(System.nanoTime() - start);
+                myWait.addAndGet(wait);
+                long max = myMaxWait.get();
+                while (wait > max && !myMaxWait.compareAndSet(max, wait)) {
+                    max = myMaxWait.get();
+                }
+                if (myCompleted.incrementAndGet() % REPORT_PERIOD == 0
+                        && LOG.isLoggable(Level.FINE))
+                {
+                    LOG.fine(getStatistics());
+                }
+            }
+        }
+
+        private static long toMillis( long nanos ) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        private final Lane myLane;
+
+        private final RequestProcessor myProcessor;
+
+        private final Map<Object, LinkedList<Job>> myQueues;
+
+        private final Set<Object> myRunning;
+
+        private final AtomicLong myCompleted;
+
+        private final AtomicLong myStale;
+
+        private final AtomicLong myWait;
+
+        private final AtomicLong myMaxWait;
+
+        private final AtomicLong myRun;
+
+        private int myDepth;
+    }
+
+    private final Map<Lane, LaneQueue> myLanes;
+}
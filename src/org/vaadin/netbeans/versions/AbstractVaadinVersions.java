@@ -25,10 +25,11 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.openide.util.Lookup;
-import org.openide.util.RequestProcessor;
 import org.vaadin.netbeans.customizer.RemoteDataAccessStrategy;
 import org.vaadin.netbeans.customizer.VaadinConfiguration;
 import org.vaadin.netbeans.retriever.AbstractRetriever;
+import org.vaadin.netbeans.utils.Scheduler;
+import org.vaadin.netbeans.utils.Scheduler.Lane;
 
 /**
  * @author denis
@@ -102,9 +103,7 @@ public abstract class AbstractVaadinVersions extends AbstractRetriever {
         }
 
         if (postRequest) {
-            RequestProcessor processor =
-                    new RequestProcessor(AbstractVaadinVersions.class);
-            processor.post(new Runnable() {
+            Scheduler.getInstance().create(Lane.NETWORK, new Runnable() {
 
                 @Override
                 public void run() {
@@ -117,7 +116,7 @@ public abstract class AbstractVaadinVersions extends AbstractRetriever {
                     VaadinConfiguration.getInstance().setLastVersionUpdate(
                             new Date());
                 }
-            }, delay);
+            }).schedule(delay);
 
         }
     }
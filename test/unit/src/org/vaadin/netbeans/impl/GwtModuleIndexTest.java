@@ -0,0 +1,239 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.impl;
+
+import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.swing.Icon;
+import javax.swing.event.ChangeListener;
+
+import org.netbeans.api.java.project.JavaProjectConstants;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.SourceGroup;
+import org.netbeans.api.project.Sources;
+import org.netbeans.junit.NbTestCase;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.util.Lookup;
+import org.openide.util.lookup.Lookups;
+
+/**
+ * @author denis
+ */
+public class GwtModuleIndexTest extends NbTestCase {
+
+    public GwtModuleIndexTest( String name ) {
+        super(name);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clearWorkDir();
+        FileObject workDir = FileUtil.toFileObject(getWorkDir());
+        myJavaRoot = workDir.createFolder("java");
+        myResourcesRoot = workDir.createFolder("resources");
+        myIndex = new GwtModuleIndex(new TestProject(workDir, myJavaRoot,
+                myResourcesRoot));
+    }
+
+    public void testGetModules() throws IOException {
+        FileObject app = createModule(myJavaRoot, "org/example/App");
+        FileObject widgets =
+                createModule(myJavaRoot, "org/example/client/Widgets");
+        FileObject acme = createModule(myJavaRoot, "com/acme/Acme");
+        FileObject resource = createModule(myResourcesRoot, "org/example/Res");
+
+        // java root modules go first, modules of a root are sorted by FQN
+        assertEquals(Arrays.asList(acme, app, widgets, resource),
+                myIndex.getModules());
+        assertEquals(acme, myIndex.getFirst());
+        assertEquals(4, myIndex.size());
+    }
+
+    public void testFind() throws IOException {
+        FileObject app = createModule(myJavaRoot, "org/example/App");
+        FileObject resource = createModule(myResourcesRoot, "org/example/Res");
+
+        assertEquals(app, myIndex.find("org.example.App"));
+        assertEquals(resource, myIndex.find("org.example.Res"));
+        assertNull(myIndex.find("org.example.Missing"));
+    }
+
+    public void testFindInPackage() throws IOException {
+        FileObject app = createModule(myJavaRoot, "org/example/App");
+        createModule(myJavaRoot, "org/example/client/Widgets");
+        FileObject resource = createModule(myResourcesRoot, "org/example/Res");
+        FileObject root = createModule(myJavaRoot, "Root");
+
+        assertEquals(Arrays.asList(app, resource),
+                myIndex.findInPackage("org.example"));
+        assertEquals(Collections.singletonList(root),
+                myIndex.findInPackage(""));
+        assertEquals(Collections.emptyList(), myIndex.findInPackage("org"));
+    }
+
+    public void testSameModuleInSeveralRoots() throws IOException {
+        FileObject app = createModule(myJavaRoot, "org/example/App");
+        FileObject resource = createModule(myResourcesRoot, "org/example/App");
+
+        assertEquals(app, myIndex.find("org.example.App"));
+        assertEquals(Collections.singletonList(app), myIndex.getModules());
+        assertEquals(2, myIndex.size());
+
+        // the module from the other root is not dropped along with the first
+        app.delete();
+        myIndex.fileDeleted(app);
+        assertEquals(resource, myIndex.find("org.example.App"));
+        assertEquals(Collections.singletonList(resource),
+                myIndex.getModules());
+
+        app = createModule(myJavaRoot, "org/example/App");
+        myIndex.fileCreated(app);
+        assertEquals(app, myIndex.find("org.example.App"));
+        assertEquals(2, myIndex.size());
+    }
+
+    public void testFolderDeleted() throws IOException {
+        FileObject app = createModule(myJavaRoot, "org/example/App");
+        createModule(myJavaRoot, "org/example/client/Widgets");
+        assertEquals(2, myIndex.getModules().size());
+
+        FileObject folder = myJavaRoot.getFileObject("org/example/client");
+        folder.delete();
+        myIndex.fileDeleted(folder);
+        assertNull(myIndex.find("org.example.client.Widgets"));
+        assertEquals(Collections.singletonList(app), myIndex.getModules());
+    }
+
+    private FileObject createModule( FileObject root, String path )
+            throws IOException
+    {
+        return FileUtil.createData(root, path + ".gwt.xml");
+    }
+
+    private static final class TestProject implements Project {
+
+        TestProject( FileObject dir, FileObject javaRoot,
+                FileObject resourcesRoot )
+        {
+            myDir = dir;
+            myLookup =
+                    Lookups.singleton(new TestSources(new TestSourceGroup(
+                            javaRoot), new TestSourceGroup(resourcesRoot)));
+        }
+
+        @Override
+        public FileObject getProjectDirectory() {
+            return myDir;
+        }
+
+        @Override
+        public Lookup getLookup() {
+            return myLookup;
+        }
+
+        private final FileObject myDir;
+
+        private final Lookup myLookup;
+    }
+
+    private static final class TestSources implements Sources {
+
+        TestSources( SourceGroup javaGroup, SourceGroup resourcesGroup ) {
+            myJavaGroup = javaGroup;
+            myResourcesGroup = resourcesGroup;
+        }
+
+        @Override
+        public SourceGroup[] getSourceGroups( String type ) {
+            if (JavaProjectConstants.SOURCES_TYPE_JAVA.equals(type)) {
+                return new SourceGroup[] { myJavaGroup };
+            }
+            else if (JavaProjectConstants.SOURCES_TYPE_RESOURCES.equals(type))
+            {
+                return new SourceGroup[] { myResourcesGroup };
+            }
+            return new SourceGroup[0];
+        }
+
+        @Override
+        public void addChangeListener( ChangeListener listener ) {
+        }
+
+        @Override
+        public void removeChangeListener( ChangeListener listener ) {
+        }
+
+        private final SourceGroup myJavaGroup;
+
+        private final SourceGroup myResourcesGroup;
+    }
+
+    private static final class TestSourceGroup implements SourceGroup {
+
+        TestSourceGroup( FileObject root ) {
+            myRoot = root;
+        }
+
+        @Override
+        public FileObject getRootFolder() {
+            return myRoot;
+        }
+
+        @Override
+        public String getName() {
+            return myRoot.getName();
+        }
+
+        @Override
+        public String getDisplayName() {
+            return myRoot.getName();
+        }
+
+        @Override
+        public Icon getIcon( boolean opened ) {
+            return null;
+        }
+
+        @Override
+        public boolean contains( FileObject file ) {
+            return FileUtil.isParentOf(myRoot, file);
+        }
+
+        @Override
+        public void addPropertyChangeListener( PropertyChangeListener listener )
+        {
+        }
+
+        @Override
+        public void removePropertyChangeListener(
+                PropertyChangeListener listener )
+        {
+        }
+
+        private final FileObject myRoot;
+    }
+
+    private FileObject myJavaRoot;
+
+    private FileObject myResourcesRoot;
+
+    private GwtModuleIndex myIndex;
+}
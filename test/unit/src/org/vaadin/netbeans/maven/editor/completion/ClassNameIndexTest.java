@@ -0,0 +1,133 @@
+/*
+ * Copyright 2000-2013 Vaadin Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.vaadin.netbeans.maven.editor.completion;
+
+import static org.junit.Assert.*;
+
+import org.netbeans.junit.NbTestCase;
+import org.vaadin.netbeans.maven.editor.completion.SourceClass.SourceType;
+
+/**
+ * @author denis
+ */
+public class ClassNameIndexTest extends NbTestCase {
+
+    public ClassNameIndexTest( String name ) {
+        super(name);
+    }
+
+    public void testEmptyPrefix() {
+        ClassNameIndex index = createIndex();
+
+        int[] positions = index.search("", SourceType.SERVER, false, 0, 100);
+        assertArrayEquals(new String[] { "Button", "buttonGroup", "ComboBox",
+                "Grid" }, getNames(index, positions));
+
+        positions = index.search("", SourceType.SERVER, false, 1, 2);
+        assertArrayEquals(new String[] { "buttonGroup", "ComboBox" },
+                getNames(index, positions));
+    }
+
+    public void testPrefix() {
+        ClassNameIndex index = createIndex();
+
+        int[] positions = index.search("bu", SourceType.SERVER, false, 0, 100);
+        assertArrayEquals(new String[] { "Button", "buttonGroup" },
+                getNames(index, positions));
+        assertEquals("org.example.Button", index.getQualifiedName(positions[0]));
+        assertEquals("Buttons", index.getAddOnName(positions[0]));
+        assertEquals("buttons-1", index.getAddOnId(positions[0]));
+
+        positions = index.search("Label", SourceType.SERVER, false, 0, 100);
+        assertEquals(0, positions.length);
+    }
+
+    public void testOffsetPastLastMatch() {
+        ClassNameIndex index = createIndex();
+
+        int[] positions = index.search("bu", SourceType.SERVER, false, 2, 100);
+        assertEquals(0, positions.length);
+
+        positions = index.search("", SourceType.SERVER, false, 10, 100);
+        assertEquals(0, positions.length);
+
+        positions = index.search("bu", SourceType.SERVER, false, 1, 100);
+        assertArrayEquals(new String[] { "buttonGroup" },
+                getNames(index, positions));
+    }
+
+    public void testCaseSensitive() {
+        ClassNameIndex index = createIndex();
+
+        int[] positions = index.search("Bu", SourceType.SERVER, true, 0, 100);
+        assertArrayEquals(new String[] { "Button" }, getNames(index, positions));
+
+        positions = index.search("bu", SourceType.SERVER, true, 0, 100);
+        assertArrayEquals(new String[] { "buttonGroup" },
+                getNames(index, positions));
+
+        // offset counts case sensitive matches only
+        positions = index.search("bu", SourceType.SERVER, true, 1, 100);
+        assertEquals(0, positions.length);
+    }
+
+    public void testSourceTypePostings() {
+        ClassNameIndex index = createIndex();
+
+        int[] positions = index.search("", SourceType.CLIENT, false, 0, 100);
+        assertArrayEquals(new String[] { "ButtonConnector", "GridWidget" },
+                getNames(index, positions));
+
+        positions = index.search("grid", SourceType.CLIENT, false, 0, 100);
+        assertArrayEquals(new String[] { "GridWidget" },
+                getNames(index, positions));
+
+        positions = index.search("", SourceType.TEST, false, 0, 100);
+        assertEquals(0, positions.length);
+
+        assertEquals(6, index.size());
+    }
+
+    private ClassNameIndex createIndex() {
+        ClassNameIndex.Builder builder = new ClassNameIndex.Builder();
+        builder.add(SourceType.SERVER, "Grid", "org.example.Grid", "Grids",
+                "grids-1");
+        builder.add(SourceType.CLIENT, "GridWidget",
+                "org.example.client.GridWidget", "Grids", "grids-1");
+        builder.add(SourceType.SERVER, "buttonGroup",
+                "org.example.buttonGroup", "Buttons", "buttons-1");
+        builder.add(SourceType.SERVER, "Button", "org.example.Button",
+                "Buttons", "buttons-1");
+        builder.add(SourceType.CLIENT, "ButtonConnector",
+                "org.example.client.ButtonConnector", "Buttons", "buttons-1");
+        builder.add(SourceType.SERVER, "ComboBox", "org.example.ComboBox",
+                "Combos", "combos-1");
+        // entries without type or name are skipped
+        builder.add(null, "Ignored", "org.example.Ignored", "Combos",
+                "combos-1");
+        builder.add(SourceType.SERVER, null, "org.example.Ignored", "Combos",
+                "combos-1");
+        return builder.build();
+    }
+
+    private String[] getNames( ClassNameIndex index, int[] positions ) {
+        String[] names = new String[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            names[i] = index.getName(positions[i]);
+        }
+        return names;
+    }
+}